@@ -0,0 +1,112 @@
+package com.app.chatori.model;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.util.CustomClassMapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of the stall codec against Firestore's reflective mapper on a
+ * synthetic 10k document set, run on a device where the decoding happens.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StallCodecBenchmark {
+    private static final String[] DISHES = {
+            "Golgappe", "Momos", "Aloo Tikki", "Kathi Roll", "Chole Bhature", "Pav Bhaji", "Samosa", "Jalebi"
+    };
+    private static final String[] AREAS = {
+            "Chandni Chowk", "Lajpat Nagar", "Karol Bagh", "Sarojini Nagar", "Hauz Khas", "Janakpuri"
+    };
+
+    @Test
+    public void tenThousandDocuments_codecBeatsReflection() {
+        Random random = new Random(42);
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            documents.add(stallData(i, random));
+        }
+
+        // Warm up the JIT before measuring
+        for (int i = 0; i < 3; i++) {
+            decodeAll(documents, false);
+            decodeAll(documents, true);
+        }
+
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            decodeAll(documents, true);
+        }
+        double reflectiveMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            decodeAll(documents, false);
+        }
+        double codecMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            for (Map<String, Object> data : documents) {
+                StallCodec.decode(null, data, StallCodec.LIST_FIELDS);
+            }
+        }
+        double partialMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        String timings = "reflective " + reflectiveMs + " ms, codec " + codecMs
+                + " ms, codec list fields " + partialMs + " ms";
+        assertTrue(timings, codecMs < reflectiveMs);
+    }
+
+    private static void decodeAll(List<Map<String, Object>> documents, boolean reflective) {
+        for (Map<String, Object> data : documents) {
+            Stall stall = reflective
+                    ? CustomClassMapper.convertToCustomClass(data, Stall.class, null)
+                    : StallCodec.decode(null, data, null);
+            assertNotNull(stall.getName());
+        }
+    }
+
+    /**
+     * Builds stall data the way Firestore returns it: whole numbers as Long,
+     * decimals as Double and dates as Timestamp.
+     */
+    private static Map<String, Object> stallData(int i, Random random) {
+        String dish = DISHES[random.nextInt(DISHES.length)];
+        Map<String, Object> data = new HashMap<>();
+        data.put("stallId", "s" + i);
+        data.put("name", "Stall " + i + " " + dish);
+        data.put("dishType", dish);
+        data.put("area", AREAS[random.nextInt(AREAS.length)]);
+        data.put("location", new GeoPoint(28.5 + random.nextDouble(), 77 + random.nextDouble()));
+        data.put("geohash", "ttn" + Integer.toString(i, 32));
+        data.put("images", Arrays.asList("https://example.com/" + i + "/1.jpg", "https://example.com/" + i + "/2.jpg"));
+        data.put("createdBy", "u" + random.nextInt(500));
+        double rating = random.nextInt(50) / 10.0;
+        long numRatings = random.nextInt(300);
+        data.put("rating", rating);
+        data.put("numRatings", numRatings);
+        data.put("ratingSum", rating * numRatings);
+        data.put("description", "Famous for " + dish);
+        data.put("openingHours", "10 AM - 10 PM");
+        data.put("phone", "98" + (10_000_000 + i));
+        data.put("userId", "u" + random.nextInt(500));
+        data.put("ownerName", "Owner " + i);
+        data.put("createdAt", new Timestamp(1_700_000_000L + i, 0));
+        data.put("updatedAt", new Timestamp(1_710_000_000L + i, 0));
+        return data;
+    }
+}
@@ -0,0 +1,69 @@
+package com.app.chatori.repository;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.app.chatori.model.Stall;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency benchmark for the fuzzy stall search, run on a device so it
+ * measures the phones the 5 ms budget is meant for.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StallFuzzyIndexBenchmark {
+    private static final String[] DISHES = {
+            "Golgappe", "Pani Puri", "Momos", "Aloo Tikki", "Kathi Roll", "Chole Bhature",
+            "Pav Bhaji", "Vada Pav", "Dahi Puri", "Bhel Puri", "Samosa", "Jalebi", "Biryani", "Chowmein"
+    };
+    private static final String[] AREAS = {
+            "Chandni Chowk", "Lajpat Nagar", "Karol Bagh", "Sarojini Nagar", "Connaught Place",
+            "Kamla Nagar", "Rajouri Garden", "Hauz Khas", "Mayur Vihar", "Janakpuri"
+    };
+    private static final String[] NAMES = {
+            "Sharma", "Gupta", "Bittu", "Pappu", "Raju", "Shankar", "Babu", "Kallu", "Monu", "Chotu"
+    };
+
+    @Test
+    public void fiftyThousandStalls_withinBudget() {
+        Random random = new Random(42);
+        List<Stall> stalls = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            String dish = DISHES[random.nextInt(DISHES.length)];
+            String name = NAMES[random.nextInt(NAMES.length)] + " " + dish + " " + i;
+            Stall stall = new Stall("s" + i, name, dish, AREAS[random.nextInt(AREAS.length)], null, "u");
+            stall.setRating(random.nextInt(50) / 10f);
+            stalls.add(stall);
+        }
+
+        StallFuzzyIndex index = new StallFuzzyIndex();
+        index.rebuild(stalls);
+
+        String[] queries = {"golgape", "gol gappe", "panipuri", "momso", "chole bhature", "lajpat", "tiki", "kathi rol"};
+        // Warm up the JIT before measuring
+        for (int i = 0; i < 20; i++) {
+            for (String query : queries) {
+                index.search(query, StallFuzzyIndex.DEFAULT_LIMIT, Long.MAX_VALUE);
+            }
+        }
+
+        // Searches run without a deadline, so the budget is met by the index and not by cutting it short
+        int runs = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            for (String query : queries) {
+                assertFalse(query, index.search(query, StallFuzzyIndex.DEFAULT_LIMIT, Long.MAX_VALUE).isEmpty());
+            }
+        }
+        double averageMs = (System.nanoTime() - start) / 1e6 / (runs * queries.length);
+        double budgetMs = StallFuzzyIndex.DEFAULT_BUDGET_NANOS / 1e6;
+        assertTrue("Average query took " + averageMs + " ms, budget is " + budgetMs + " ms", averageMs <= budgetMs);
+    }
+}
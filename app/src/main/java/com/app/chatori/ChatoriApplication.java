@@ -2,6 +2,8 @@ package com.app.chatori;
 
 import android.app.Application;
 
+import com.app.chatori.repository.CatalogSyncState;
+import com.app.chatori.repository.StallDatabase;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
@@ -24,5 +26,9 @@ public class ChatoriApplication extends Application {
                 .setPersistenceEnabled(true)
                 .build();
         FirebaseFirestore.getInstance().setFirestoreSettings(settings);
+        
+        // Local state for syncing and mirroring the stall catalog
+        CatalogSyncState.init(this);
+        StallDatabase.init(this);
     }
 }
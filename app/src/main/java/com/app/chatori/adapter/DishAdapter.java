@@ -8,25 +8,37 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
 import com.app.chatori.model.Dish;
 import com.app.chatori.utils.UIUtils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Adapter for displaying dishes in a RecyclerView.
+ * Updates are diffed on a background thread so only changed rows are rebound.
  */
-public class DishAdapter extends RecyclerView.Adapter<DishAdapter.DishViewHolder> {
+public class DishAdapter extends ListAdapter<Dish, DishAdapter.DishViewHolder> {
 
     private final Context context;
-    private List<Dish> dishes;
+    private final StableIds stableIds = new StableIds();
 
     public DishAdapter(Context context, List<Dish> dishes) {
+        super(DISH_DIFF);
         this.context = context;
-        this.dishes = dishes;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(dishes));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).getDishId());
     }
 
     @NonNull
@@ -38,7 +50,7 @@ public class DishAdapter extends RecyclerView.Adapter<DishAdapter.DishViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull DishViewHolder holder, int position) {
-        Dish dish = dishes.get(position);
+        Dish dish = getItem(position);
         
         // Set dish name
         holder.tvDishName.setText(dish.getName());
@@ -54,19 +66,31 @@ public class DishAdapter extends RecyclerView.Adapter<DishAdapter.DishViewHolder
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return dishes.size();
-    }
-
     /**
-     * Updates the dishes list and refreshes the adapter
+     * Updates the dishes list, rebinding only the rows that changed
      */
     public void updateDishes(List<Dish> newDishes) {
-        this.dishes = newDishes;
-        notifyDataSetChanged();
+        // Copy so callers can keep mutating their own list
+        submitList(new ArrayList<>(newDishes));
     }
 
+    /**
+     * Dishes are told apart by document ID, as two dishes may share a name
+     */
+    private static final DiffUtil.ItemCallback<Dish> DISH_DIFF = new DiffUtil.ItemCallback<Dish>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Dish oldItem, @NonNull Dish newItem) {
+            return Objects.equals(oldItem.getDishId(), newItem.getDishId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Dish oldItem, @NonNull Dish newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getPrice(), newItem.getPrice())
+                    && Objects.equals(oldItem.getImageUrl(), newItem.getImageUrl());
+        }
+    };
+
     /**
      * ViewHolder for dish items
      */
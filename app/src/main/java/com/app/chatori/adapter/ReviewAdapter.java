@@ -10,6 +10,8 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
@@ -18,28 +20,37 @@ import com.app.chatori.ui.stall.StallDetailActivity;
 import com.app.chatori.utils.DateUtils;
 import com.app.chatori.utils.UIUtils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Adapter for displaying reviews in a RecyclerView.
+ * Updates are diffed on a background thread so only changed rows are rebound.
  */
-public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewViewHolder> {
+public class ReviewAdapter extends ListAdapter<Review, ReviewAdapter.ReviewViewHolder> {
 
     private final Context context;
-    private List<Review> reviews;
+    private final StableIds stableIds = new StableIds();
     private boolean showStallName = true;
 
     public ReviewAdapter(Context context, List<Review> reviews) {
+        super(REVIEW_DIFF);
         this.context = context;
-        this.reviews = reviews;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(reviews));
     }
 
     public ReviewAdapter(Context context, List<Review> reviews, boolean showStallName) {
-        this.context = context;
-        this.reviews = reviews;
+        this(context, reviews);
         this.showStallName = showStallName;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).getReviewId());
+    }
+
     @NonNull
     @Override
     public ReviewViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -49,7 +60,7 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
 
     @Override
     public void onBindViewHolder(@NonNull ReviewViewHolder holder, int position) {
-        Review review = reviews.get(position);
+        Review review = getItem(position);
         
         // Load user profile image
         UIUtils.loadProfileImage(context, review.getUserProfileImageUrl(), holder.ivUserProfile);
@@ -82,19 +93,35 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
         });
     }
 
-    @Override
-    public int getItemCount() {
-        return reviews.size();
-    }
-
     /**
-     * Updates the reviews list and refreshes the adapter
+     * Updates the reviews list, rebinding only the rows that changed
      */
     public void updateReviews(List<Review> newReviews) {
-        this.reviews = newReviews;
-        notifyDataSetChanged();
+        // Copy so callers can keep mutating their own list
+        submitList(new ArrayList<>(newReviews));
     }
 
+    /**
+     * Reviews are the same item when their IDs match, and unchanged when every
+     * field shown in the row is equal
+     */
+    private static final DiffUtil.ItemCallback<Review> REVIEW_DIFF = new DiffUtil.ItemCallback<Review>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Review oldItem, @NonNull Review newItem) {
+            return Objects.equals(oldItem.getReviewId(), newItem.getReviewId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Review oldItem, @NonNull Review newItem) {
+            return oldItem.getRating() == newItem.getRating()
+                    && Objects.equals(oldItem.getText(), newItem.getText())
+                    && Objects.equals(oldItem.getUserName(), newItem.getUserName())
+                    && Objects.equals(oldItem.getUserProfileImageUrl(), newItem.getUserProfileImageUrl())
+                    && Objects.equals(oldItem.getStallName(), newItem.getStallName())
+                    && Objects.equals(oldItem.getCreatedAt(), newItem.getCreatedAt());
+        }
+    };
+
     /**
      * ViewHolder for review items
      */
@@ -0,0 +1,33 @@
+package com.app.chatori.adapter;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out stable RecyclerView item IDs for string keys such as stall and review IDs.
+ * Unlike hashCode() the IDs never collide, so RecyclerView can keep views
+ * attached to the right item across list updates.
+ */
+class StableIds {
+
+    private final Map<String, Long> ids = new HashMap<>();
+
+    /**
+     * Gets the ID for a key, assigning a new one the first time it is seen
+     * @param key Item key
+     * @return Stable item ID, or NO_ID for a null key
+     */
+    long idFor(String key) {
+        if (key == null) {
+            return RecyclerView.NO_ID;
+        }
+        Long id = ids.get(key);
+        if (id == null) {
+            id = (long) ids.size();
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
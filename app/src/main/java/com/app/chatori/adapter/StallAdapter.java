@@ -10,26 +10,45 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
 import com.app.chatori.model.Stall;
 import com.app.chatori.ui.stall.StallDetailActivity;
+import com.app.chatori.utils.LocationUtils;
 import com.app.chatori.utils.UIUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Adapter for displaying stalls in a RecyclerView.
+ * Updates are diffed on a background thread so only changed rows are rebound.
  */
-public class StallAdapter extends RecyclerView.Adapter<StallAdapter.StallViewHolder> {
+public class StallAdapter extends ListAdapter<Stall, StallAdapter.StallViewHolder> {
+
+    // Rebinds only the area line when a stall's distance changed
+    private static final Object PAYLOAD_DISTANCE = new Object();
 
     private final Context context;
-    private List<Stall> stalls;
+    private final StableIds stableIds = new StableIds();
+    private Map<String, Double> distances = Collections.emptyMap();
 
     public StallAdapter(Context context, List<Stall> stalls) {
+        super(STALL_DIFF);
         this.context = context;
-        this.stalls = stalls;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(stalls));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).getStallId());
     }
 
     @NonNull
@@ -39,31 +58,47 @@ public class StallAdapter extends RecyclerView.Adapter<StallAdapter.StallViewHol
         return new StallViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull StallViewHolder holder, int position, @NonNull List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_DISTANCE) {
+                // Something else changed too, do a full bind
+                super.onBindViewHolder(holder, position, payloads);
+                return;
+            }
+        }
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            bindArea(holder, getItem(position));
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull StallViewHolder holder, int position) {
-        Stall stall = stalls.get(position);
-        
+        Stall stall = getItem(position);
+
         // Set stall name
         holder.tvStallName.setText(stall.getName());
-        
+
         // Set dish type
         holder.tvDishType.setText(stall.getDishType());
-        
-        // Set area
-        holder.tvArea.setText(stall.getArea());
-        
+
+        // Set area, with the distance when one is known
+        bindArea(holder, stall);
+
         // Set rating
         holder.ratingBar.setRating(stall.getRating());
         holder.tvRating.setText(String.format("%.1f", stall.getRating()));
         holder.tvNumRatings.setText(String.format("(%d)", stall.getNumRatings()));
-        
+
         // Load stall image
         if (stall.getImages() != null && !stall.getImages().isEmpty()) {
             UIUtils.loadImage(context, stall.getImages().get(0), holder.ivStallImage);
         } else {
             holder.ivStallImage.setImageResource(R.drawable.placeholder_image);
         }
-        
+
         // Set click listener
         holder.itemView.setOnClickListener(v -> {
             Intent intent = new Intent(context, StallDetailActivity.class);
@@ -72,19 +107,67 @@ public class StallAdapter extends RecyclerView.Adapter<StallAdapter.StallViewHol
         });
     }
 
-    @Override
-    public int getItemCount() {
-        return stalls.size();
+    private void bindArea(StallViewHolder holder, Stall stall) {
+        Double distance = distances.get(stall.getStallId());
+        if (distance != null) {
+            holder.tvArea.setText(stall.getArea() + " • " + LocationUtils.formatDistance(distance));
+        } else {
+            holder.tvArea.setText(stall.getArea());
+        }
     }
 
     /**
-     * Updates the stalls list and refreshes the adapter
+     * Updates the stalls list, rebinding only the rows that changed
      */
     public void updateStalls(List<Stall> newStalls) {
-        this.stalls = newStalls;
-        notifyDataSetChanged();
+        updateStalls(newStalls, Collections.emptyMap());
+    }
+
+    /**
+     * Updates the stalls list along with their distances in kilometers
+     */
+    public void updateStalls(List<Stall> newStalls, Map<String, Double> newDistances) {
+        // Copy so callers can keep mutating their own list
+        List<Stall> submitted = new ArrayList<>(newStalls);
+        submitList(submitted, () -> {
+            // Distances are not part of the diff, refresh the rows whose distance moved
+            Map<String, Double> oldDistances = distances;
+            distances = newDistances;
+            for (int i = 0; i < getItemCount(); i++) {
+                String stallId = getItem(i).getStallId();
+                if (!Objects.equals(oldDistances.get(stallId), newDistances.get(stallId))) {
+                    notifyItemChanged(i, PAYLOAD_DISTANCE);
+                }
+            }
+        });
     }
 
+    /**
+     * Stalls are the same item when their IDs match, and unchanged when every
+     * field shown in the row is equal
+     */
+    static final DiffUtil.ItemCallback<Stall> STALL_DIFF = new DiffUtil.ItemCallback<Stall>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Stall oldItem, @NonNull Stall newItem) {
+            return Objects.equals(oldItem.getStallId(), newItem.getStallId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Stall oldItem, @NonNull Stall newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getDishType(), newItem.getDishType())
+                    && Objects.equals(oldItem.getArea(), newItem.getArea())
+                    && oldItem.getRating() == newItem.getRating()
+                    && oldItem.getNumRatings() == newItem.getNumRatings()
+                    && Objects.equals(firstImage(oldItem), firstImage(newItem));
+        }
+
+        private String firstImage(Stall stall) {
+            List<String> images = stall.getImages();
+            return images != null && !images.isEmpty() ? images.get(0) : null;
+        }
+    };
+
     /**
      * ViewHolder for stall items
      */
@@ -10,6 +10,7 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
@@ -17,19 +18,28 @@ import com.app.chatori.model.Stall;
 import com.app.chatori.ui.stall.StallDetailActivity;
 import com.app.chatori.utils.UIUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Adapter for displaying stalls in a RecyclerView.
+ * Updates are diffed on a background thread so only changed rows are rebound.
  */
-public class StallFullScreenAdapter extends RecyclerView.Adapter<StallFullScreenAdapter.StallViewHolder> {
+public class StallFullScreenAdapter extends ListAdapter<Stall, StallFullScreenAdapter.StallViewHolder> {
 
     private final Context context;
-    private List<Stall> stalls;
+    private final StableIds stableIds = new StableIds();
 
     public StallFullScreenAdapter(Context context, List<Stall> stalls) {
+        super(StallAdapter.STALL_DIFF);
         this.context = context;
-        this.stalls = stalls;
+        setHasStableIds(true);
+        submitList(new ArrayList<>(stalls));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).getStallId());
     }
 
     @NonNull
@@ -41,7 +51,7 @@ public class StallFullScreenAdapter extends RecyclerView.Adapter<StallFullScreen
 
     @Override
     public void onBindViewHolder(@NonNull StallViewHolder holder, int position) {
-        Stall stall = stalls.get(position);
+        Stall stall = getItem(position);
         
         // Set stall name
         holder.tvStallName.setText(stall.getName());
@@ -72,17 +82,12 @@ public class StallFullScreenAdapter extends RecyclerView.Adapter<StallFullScreen
         });
     }
 
-    @Override
-    public int getItemCount() {
-        return stalls.size();
-    }
-
     /**
-     * Updates the stalls list and refreshes the adapter
+     * Updates the stalls list, rebinding only the rows that changed
      */
     public void updateStalls(List<Stall> newStalls) {
-        this.stalls = newStalls;
-        notifyDataSetChanged();
+        // Copy so callers can keep mutating their own list
+        submitList(new ArrayList<>(newStalls));
     }
 
     /**
@@ -0,0 +1,191 @@
+package com.app.chatori.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for the small sets of category values stalls repeat,
+ * such as dish types and areas. Each value gets a small int ID, with values
+ * that differ only in case or surrounding spaces sharing one ID, so category
+ * filters compare ints instead of strings.
+ * Decoded stalls also share one String instance per distinct value.
+ * IDs are never reused, but the catalog counts how many of its stalls hold
+ * each value, so filter options can leave out values no stall has any more.
+ */
+public final class CategoryDictionary {
+    /** Dish types of all stalls seen */
+    public static final CategoryDictionary DISH_TYPES = new CategoryDictionary();
+    /** Areas of all stalls seen */
+    public static final CategoryDictionary AREAS = new CategoryDictionary();
+
+    /** ID returned for null, empty and unknown values */
+    public static final int NONE = -1;
+
+    // Normalized value to ID
+    private final Map<String, Integer> ids = new HashMap<>();
+    // Exact value to its shared instance
+    private final Map<String, String> instances = new HashMap<>();
+    // First spelling seen of each ID, used for display
+    private final List<String> names = new ArrayList<>();
+    private final List<String> normalizedNames = new ArrayList<>();
+    // Every exact spelling seen of each ID, for queries that match stored values
+    private final List<List<String>> spellings = new ArrayList<>();
+    // Number of catalog stalls holding each ID
+    private final List<Integer> liveCounts = new ArrayList<>();
+
+    private CategoryDictionary() {
+    }
+
+    /**
+     * Normalizes a value for comparison
+     * @param value Value to normalize
+     * @return Trimmed, lowercase value, or an empty string for null
+     */
+    public static String normalize(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Gets the ID of a value, adding the value if it is new
+     * @param value Category value
+     * @return The value's ID, or NONE for null and empty values
+     */
+    public synchronized int intern(String value) {
+        String normalized = normalize(value);
+        if (normalized.isEmpty()) return NONE;
+
+        Integer id = ids.get(normalized);
+        if (id == null) {
+            id = names.size();
+            ids.put(normalized, id);
+            names.add(value.trim());
+            normalizedNames.add(normalized);
+            spellings.add(new ArrayList<>());
+            liveCounts.add(0);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the ID of a value without adding it
+     * @param value Category value
+     * @return The value's ID, or NONE if it was never seen
+     */
+    public synchronized int find(String value) {
+        Integer id = ids.get(normalize(value));
+        return id != null ? id : NONE;
+    }
+
+    /**
+     * Adds a value and returns one shared instance per exact spelling,
+     * so stalls decoded with the same value do not each keep a copy
+     * @param value Category value
+     * @return An equal, shared String, or the value itself if null
+     */
+    public synchronized String canonical(String value) {
+        if (value == null) return null;
+
+        String shared = instances.get(value);
+        if (shared == null) {
+            instances.put(value, value);
+            int id = intern(value);
+            if (id != NONE) {
+                spellings.get(id).add(value);
+            }
+            shared = value;
+        }
+        return shared;
+    }
+
+    /**
+     * Gets every exact spelling seen of a value, such as "Momos" and "momos ",
+     * so a query on the stored field can match all of them
+     * @param value Category value
+     * @return The spellings seen, or just the value if none were
+     */
+    public synchronized List<String> getSpellings(String value) {
+        int id = find(value);
+        if (id == NONE || spellings.get(id).isEmpty()) {
+            List<String> single = new ArrayList<>();
+            single.add(value);
+            return single;
+        }
+        return new ArrayList<>(spellings.get(id));
+    }
+
+    /**
+     * @param id Value ID
+     * @return The value as first spelled, for display
+     */
+    public synchronized String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @param id Value ID
+     * @return The trimmed, lowercase value
+     */
+    public synchronized String getNormalized(int id) {
+        return normalizedNames.get(id);
+    }
+
+    /**
+     * @return Display names of every value, in ID order
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Counts one more catalog stall holding a value. A value coming back after
+     * no stall held it is displayed with its new spelling.
+     * @param value Category value of the stall
+     */
+    public synchronized void retain(String value) {
+        int id = intern(value);
+        if (id == NONE) return;
+
+        int count = liveCounts.get(id);
+        if (count == 0) {
+            names.set(id, value.trim());
+        }
+        liveCounts.set(id, count + 1);
+    }
+
+    /**
+     * Counts one fewer catalog stall holding a value
+     * @param value Category value of the stall that changed or was removed
+     */
+    public synchronized void release(String value) {
+        int id = find(value);
+        if (id == NONE) return;
+
+        int count = liveCounts.get(id);
+        if (count > 0) {
+            liveCounts.set(id, count - 1);
+        }
+    }
+
+    /**
+     * @return Display names of the values held by at least one catalog stall, in ID order
+     */
+    public synchronized List<String> getLiveNames() {
+        List<String> live = new ArrayList<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (liveCounts.get(id) > 0) {
+                live.add(names.get(id));
+            }
+        }
+        return live;
+    }
+
+    /**
+     * @return Number of distinct values
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,83 @@
+package com.app.chatori.model;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typed reads from a Firestore data map, shared by the model codecs.
+ * Firestore returns whole numbers as Long and decimals as Double, so numbers
+ * are read through Number. A value of the wrong type reads as missing.
+ */
+final class CodecFields {
+
+    private CodecFields() {
+    }
+
+    /**
+     * Checks if a field should be decoded
+     * @param fields Fields to decode, or null for all of them
+     * @param field Field name
+     * @return True if the field is wanted
+     */
+    static boolean wants(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    static String getString(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    static float getFloat(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number ? ((Number) value).floatValue() : 0f;
+    }
+
+    static int getInt(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    static Double getDouble(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    static Date getDate(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate();
+        }
+        return value instanceof Date ? (Date) value : null;
+    }
+
+    static GeoPoint getGeoPoint(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof GeoPoint ? (GeoPoint) value : null;
+    }
+
+    /**
+     * Reads a list of strings, skipping any element that is not a string
+     * @return A new mutable list, or null if the field is missing
+     */
+    static List<String> getStringList(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<?> values = (List<?>) value;
+        List<String> strings = new ArrayList<>(values.size());
+        for (Object element : values) {
+            if (element instanceof String) {
+                strings.add((String) element);
+            }
+        }
+        return strings;
+    }
+}
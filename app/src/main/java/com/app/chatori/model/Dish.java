@@ -3,16 +3,23 @@ package com.app.chatori.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.firebase.firestore.ServerTimestamp;
+
 /**
  * Model class representing a dish in the Chatori app.
  * Maps to the "Dishes" collection in Firestore.
  * Used for filter dropdowns and categorization.
  */
 public class Dish {
+    private String dishId;
     private String name;
     private List<String> tags;
     private String price;
     private String imageUrl;
+    private String stallId;
+    // Set by the server on every write, lets the catalog read only new dishes
+    @ServerTimestamp
+    private java.util.Date updatedAt;
 
     // Required empty constructor for Firestore
     public Dish() {
@@ -40,6 +47,14 @@ public class Dish {
     }
 
     // Getters and Setters
+    public String getDishId() {
+        return dishId;
+    }
+
+    public void setDishId(String dishId) {
+        this.dishId = dishId;
+    }
+
     public String getName() {
         return name;
     }
@@ -72,6 +87,22 @@ public class Dish {
         this.imageUrl = imageUrl;
     }
     
+    public String getStallId() {
+        return stallId;
+    }
+    
+    public void setStallId(String stallId) {
+        this.stallId = stallId;
+    }
+    
+    public java.util.Date getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(java.util.Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
     public void addTag(String tag) {
         if (tags == null) {
             tags = new ArrayList<>();
@@ -0,0 +1,84 @@
+package com.app.chatori.model;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.app.chatori.model.CodecFields.*;
+
+/**
+ * Decodes dish documents by reading their data map directly, instead of
+ * through the reflective mapping in DocumentSnapshot.toObject.
+ */
+public final class DishCodec {
+    public static final String DISH_ID = "dishId";
+    public static final String NAME = "name";
+    public static final String TAGS = "tags";
+    public static final String PRICE = "price";
+    public static final String IMAGE_URL = "imageUrl";
+    public static final String STALL_ID = "stallId";
+    public static final String UPDATED_AT = "updatedAt";
+
+    /** Fields needed to index a dish's tags under its stall */
+    public static final Set<String> TAG_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            TAGS, STALL_ID)));
+
+    private DishCodec() {
+    }
+
+    /**
+     * Decodes every field of a dish document
+     * @param document Dish document
+     * @return The dish, or null if the document does not exist
+     */
+    public static Dish decode(DocumentSnapshot document) {
+        return decode(document, null);
+    }
+
+    /**
+     * Decodes some fields of a dish document, the rest keep their defaults
+     * @param document Dish document
+     * @param fields Fields to decode, or null for all of them
+     * @return The dish, or null if the document does not exist
+     */
+    public static Dish decode(DocumentSnapshot document, Set<String> fields) {
+        Map<String, Object> data = document.getData();
+        return data != null ? decode(document.getId(), data, fields) : null;
+    }
+
+    /**
+     * Decodes a dish from a document's data map
+     * @param documentId ID of the document, used when the data has no dishId
+     * @param data Document data
+     * @param fields Fields to decode, or null for all of them
+     * @return The dish
+     */
+    public static Dish decode(String documentId, Map<String, Object> data, Set<String> fields) {
+        Dish dish = new Dish();
+        String dishId = getString(data, DISH_ID);
+        dish.setDishId(dishId != null ? dishId : documentId);
+        if (wants(fields, NAME)) dish.setName(getString(data, NAME));
+        if (wants(fields, TAGS)) {
+            List<String> tags = getStringList(data, TAGS);
+            if (tags != null) {
+                dish.setTags(tags);
+            }
+        }
+        if (wants(fields, PRICE)) {
+            // Prices are stored as text, but accept numbers too
+            Object price = data.get(PRICE);
+            if (price != null) {
+                dish.setPrice(String.valueOf(price));
+            }
+        }
+        if (wants(fields, IMAGE_URL)) dish.setImageUrl(getString(data, IMAGE_URL));
+        if (wants(fields, STALL_ID)) dish.setStallId(getString(data, STALL_ID));
+        if (wants(fields, UPDATED_AT)) dish.setUpdatedAt(getDate(data, UPDATED_AT));
+        return dish;
+    }
+}
@@ -14,7 +14,7 @@ public class Review {
     private String comment;
     private Date timestamp;
     
-    // Transient fields (not stored in Firestore)
+    // Copied in when the review is written; author fields are refreshed by UserProfileCache
     private String userName;
     private String userProfileImageUrl;
     private String stallName;
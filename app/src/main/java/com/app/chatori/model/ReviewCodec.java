@@ -0,0 +1,89 @@
+package com.app.chatori.model;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import static com.app.chatori.model.CodecFields.*;
+
+/**
+ * Decodes review documents by reading their data map directly, instead of
+ * through the reflective mapping in DocumentSnapshot.toObject.
+ */
+public final class ReviewCodec {
+    public static final String REVIEW_ID = "reviewId";
+    public static final String STALL_ID = "stallId";
+    public static final String USER_ID = "userId";
+    public static final String RATING = "rating";
+    public static final String COMMENT = "comment";
+    // Older reviews were written with the comment under its alias
+    public static final String TEXT = "text";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String USER_NAME = "userName";
+    public static final String USER_PROFILE_IMAGE_URL = "userProfileImageUrl";
+    public static final String STALL_NAME = "stallName";
+    public static final String CREATED_AT = "createdAt";
+
+    private ReviewCodec() {
+    }
+
+    /**
+     * Decodes every field of a review document
+     * @param document Review document
+     * @return The review, or null if the document does not exist
+     */
+    public static Review decode(DocumentSnapshot document) {
+        return decode(document, null);
+    }
+
+    /**
+     * Decodes some fields of a review document, the rest keep their defaults
+     * @param document Review document
+     * @param fields Fields to decode, or null for all of them
+     * @return The review, or null if the document does not exist
+     */
+    public static Review decode(DocumentSnapshot document, Set<String> fields) {
+        Map<String, Object> data = document.getData();
+        return data != null ? decode(document.getId(), data, fields) : null;
+    }
+
+    /**
+     * Decodes a review from a document's data map
+     * @param documentId ID of the document, used when the data has no reviewId
+     * @param data Document data
+     * @param fields Fields to decode, or null for all of them
+     * @return The review
+     */
+    public static Review decode(String documentId, Map<String, Object> data, Set<String> fields) {
+        Review review = new Review();
+        String reviewId = getString(data, REVIEW_ID);
+        review.setReviewId(reviewId != null ? reviewId : documentId);
+
+        if (wants(fields, STALL_ID)) review.setStallId(getString(data, STALL_ID));
+        if (wants(fields, USER_ID)) review.setUserId(getString(data, USER_ID));
+        if (wants(fields, RATING)) review.setRating(getFloat(data, RATING));
+        if (wants(fields, COMMENT)) {
+            String comment = getString(data, COMMENT);
+            review.setComment(comment != null ? comment : getString(data, TEXT));
+        }
+        // Missing dates keep the constructor's defaults, as toObject does
+        if (wants(fields, TIMESTAMP)) {
+            Date timestamp = getDate(data, TIMESTAMP);
+            if (timestamp != null) {
+                review.setTimestamp(timestamp);
+            }
+        }
+        if (wants(fields, USER_NAME)) review.setUserName(getString(data, USER_NAME));
+        if (wants(fields, USER_PROFILE_IMAGE_URL)) review.setUserProfileImageUrl(getString(data, USER_PROFILE_IMAGE_URL));
+        if (wants(fields, STALL_NAME)) review.setStallName(getString(data, STALL_NAME));
+        if (wants(fields, CREATED_AT)) {
+            Date createdAt = getDate(data, CREATED_AT);
+            if (createdAt != null) {
+                review.setCreatedAt(createdAt);
+            }
+        }
+        return review;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.ServerTimestamp;
 
 /**
  * Model class representing a food stall in the Chatori app.
@@ -15,16 +16,22 @@ public class Stall {
     private String dishType;
     private String area;
     private com.google.firebase.firestore.GeoPoint location;
+    private String geohash;
     private List<String> images;
     private String createdBy;
     private float rating;
     private int numRatings;
+    // Sum of all review ratings, kept with server-side increments
+    private Double ratingSum;
     private String description;
     private String openingHours;
     private String phone;
     private String userId;
     private String ownerName;
     private java.util.Date createdAt;
+    // Set by the server on every write, null until a write is acknowledged
+    @ServerTimestamp
+    private java.util.Date updatedAt;
 
     // Required empty constructor for Firestore
     public Stall() {
@@ -86,6 +93,14 @@ public class Stall {
         this.location = location;
     }
 
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
     public List<String> getImages() {
         return images;
     }
@@ -109,7 +124,14 @@ public class Stall {
         this.createdBy = createdBy;
     }
 
+    /**
+     * Gets the average rating, derived from the rating sum and count when available
+     * @return Average rating
+     */
     public float getRating() {
+        if (ratingSum != null && numRatings > 0) {
+            return (float) (ratingSum / numRatings);
+        }
         return rating;
     }
 
@@ -125,14 +147,25 @@ public class Stall {
         this.numRatings = numRatings;
     }
 
+    public Double getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(Double ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
     /**
      * Updates the rating when a new review is added
      * @param newRating The rating from the new review
      */
     public void updateRating(float newRating) {
-        float totalRating = this.rating * this.numRatings;
+        if (ratingSum == null) {
+            ratingSum = (double) rating * numRatings;
+        }
+        ratingSum += newRating;
         numRatings++;
-        this.rating = (totalRating + newRating) / numRatings;
+        this.rating = (float) (ratingSum / numRatings);
     }
     
     public String getDescription() {
@@ -182,6 +215,14 @@ public class Stall {
     public void setCreatedAt(java.util.Date createdAt) {
         this.createdAt = createdAt;
     }
+    
+    public java.util.Date getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(java.util.Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 
     // Using com.google.firebase.firestore.GeoPoint instead of a custom GeoPoint class
 }
@@ -0,0 +1,130 @@
+package com.app.chatori.model;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.app.chatori.model.CodecFields.*;
+
+/**
+ * Decodes stall documents by reading their data map directly, instead of
+ * through the reflective mapping in DocumentSnapshot.toObject.
+ * Screens that show only part of a stall can decode just those fields.
+ * Edits are encoded without the rating fields, which only reviews change.
+ */
+public final class StallCodec {
+    public static final String STALL_ID = "stallId";
+    public static final String NAME = "name";
+    public static final String DISH_TYPE = "dishType";
+    public static final String AREA = "area";
+    public static final String LOCATION = "location";
+    public static final String GEOHASH = "geohash";
+    public static final String IMAGES = "images";
+    public static final String CREATED_BY = "createdBy";
+    public static final String RATING = "rating";
+    public static final String NUM_RATINGS = "numRatings";
+    public static final String RATING_SUM = "ratingSum";
+    public static final String DESCRIPTION = "description";
+    public static final String OPENING_HOURS = "openingHours";
+    public static final String PHONE = "phone";
+    public static final String USER_ID = "userId";
+    public static final String OWNER_NAME = "ownerName";
+    public static final String CREATED_AT = "createdAt";
+    public static final String UPDATED_AT = "updatedAt";
+
+    /** Fields shown in a stall list row or map marker */
+    public static final Set<String> LIST_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            NAME, DISH_TYPE, AREA, LOCATION, GEOHASH, IMAGES, RATING, NUM_RATINGS, RATING_SUM, UPDATED_AT)));
+
+    private StallCodec() {
+    }
+
+    /**
+     * Decodes every field of a stall document
+     * @param document Stall document
+     * @return The stall, or null if the document does not exist
+     */
+    public static Stall decode(DocumentSnapshot document) {
+        return decode(document, null);
+    }
+
+    /**
+     * Decodes some fields of a stall document, the rest keep their defaults
+     * @param document Stall document
+     * @param fields Fields to decode, or null for all of them
+     * @return The stall, or null if the document does not exist
+     */
+    public static Stall decode(DocumentSnapshot document, Set<String> fields) {
+        Map<String, Object> data = document.getData();
+        return data != null ? decode(document.getId(), data, fields) : null;
+    }
+
+    /**
+     * Decodes a stall from a document's data map
+     * @param documentId ID of the document, used when the data has no stallId
+     * @param data Document data
+     * @param fields Fields to decode, or null for all of them
+     * @return The stall
+     */
+    public static Stall decode(String documentId, Map<String, Object> data, Set<String> fields) {
+        Stall stall = new Stall();
+        String stallId = getString(data, STALL_ID);
+        stall.setStallId(stallId != null ? stallId : documentId);
+
+        if (wants(fields, NAME)) stall.setName(getString(data, NAME));
+        if (wants(fields, DISH_TYPE)) stall.setDishType(CategoryDictionary.DISH_TYPES.canonical(getString(data, DISH_TYPE)));
+        if (wants(fields, AREA)) stall.setArea(CategoryDictionary.AREAS.canonical(getString(data, AREA)));
+        if (wants(fields, LOCATION)) stall.setLocation(getGeoPoint(data, LOCATION));
+        if (wants(fields, GEOHASH)) stall.setGeohash(getString(data, GEOHASH));
+        if (wants(fields, IMAGES)) {
+            List<String> images = getStringList(data, IMAGES);
+            if (images != null) {
+                stall.setImages(images);
+            }
+        }
+        if (wants(fields, CREATED_BY)) stall.setCreatedBy(getString(data, CREATED_BY));
+        if (wants(fields, RATING)) stall.setRating(getFloat(data, RATING));
+        if (wants(fields, NUM_RATINGS)) stall.setNumRatings(getInt(data, NUM_RATINGS));
+        if (wants(fields, RATING_SUM)) stall.setRatingSum(getDouble(data, RATING_SUM));
+        if (wants(fields, DESCRIPTION)) stall.setDescription(getString(data, DESCRIPTION));
+        if (wants(fields, OPENING_HOURS)) stall.setOpeningHours(getString(data, OPENING_HOURS));
+        if (wants(fields, PHONE)) stall.setPhone(getString(data, PHONE));
+        if (wants(fields, USER_ID)) stall.setUserId(getString(data, USER_ID));
+        if (wants(fields, OWNER_NAME)) stall.setOwnerName(getString(data, OWNER_NAME));
+        if (wants(fields, CREATED_AT)) stall.setCreatedAt(getDate(data, CREATED_AT));
+        if (wants(fields, UPDATED_AT)) stall.setUpdatedAt(getDate(data, UPDATED_AT));
+        return stall;
+    }
+
+    /**
+     * Encodes the fields a stall edit may change, leaving out the rating fields
+     * (and updatedAt, which the caller stamps on the server). Writing this with
+     * a merge never overwrites rating totals incremented by other clients.
+     * @param stall Stall to encode
+     * @return Field values keyed by document field name
+     */
+    public static Map<String, Object> encodeDetails(Stall stall) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(STALL_ID, stall.getStallId());
+        data.put(NAME, stall.getName());
+        data.put(DISH_TYPE, stall.getDishType());
+        data.put(AREA, stall.getArea());
+        data.put(LOCATION, stall.getLocation());
+        data.put(GEOHASH, stall.getGeohash());
+        data.put(IMAGES, stall.getImages());
+        data.put(CREATED_BY, stall.getCreatedBy());
+        data.put(DESCRIPTION, stall.getDescription());
+        data.put(OPENING_HOURS, stall.getOpeningHours());
+        data.put(PHONE, stall.getPhone());
+        data.put(USER_ID, stall.getUserId());
+        data.put(OWNER_NAME, stall.getOwnerName());
+        data.put(CREATED_AT, stall.getCreatedAt());
+        return data;
+    }
+}
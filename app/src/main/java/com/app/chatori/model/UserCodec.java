@@ -0,0 +1,79 @@
+package com.app.chatori.model;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.app.chatori.model.CodecFields.*;
+
+/**
+ * Decodes user documents by reading their data map directly, instead of
+ * through the reflective mapping in DocumentSnapshot.toObject.
+ */
+public final class UserCodec {
+    public static final String USER_ID = "userId";
+    public static final String NAME = "name";
+    public static final String EMAIL = "email";
+    public static final String PROFILE_IMAGE_URL = "profileImageUrl";
+    public static final String BIO = "bio";
+    public static final String PHONE = "phone";
+    public static final String FAVORITES = "favorites";
+
+    /** Fields shown next to a review */
+    public static final Set<String> PROFILE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            NAME, PROFILE_IMAGE_URL)));
+
+    private UserCodec() {
+    }
+
+    /**
+     * Decodes every field of a user document
+     * @param document User document
+     * @return The user, or null if the document does not exist
+     */
+    public static User decode(DocumentSnapshot document) {
+        return decode(document, null);
+    }
+
+    /**
+     * Decodes some fields of a user document, the rest keep their defaults
+     * @param document User document
+     * @param fields Fields to decode, or null for all of them
+     * @return The user, or null if the document does not exist
+     */
+    public static User decode(DocumentSnapshot document, Set<String> fields) {
+        Map<String, Object> data = document.getData();
+        return data != null ? decode(document.getId(), data, fields) : null;
+    }
+
+    /**
+     * Decodes a user from a document's data map
+     * @param documentId ID of the document, used when the data has no userId
+     * @param data Document data
+     * @param fields Fields to decode, or null for all of them
+     * @return The user
+     */
+    public static User decode(String documentId, Map<String, Object> data, Set<String> fields) {
+        User user = new User();
+        String userId = getString(data, USER_ID);
+        user.setUserId(userId != null ? userId : documentId);
+
+        if (wants(fields, NAME)) user.setName(getString(data, NAME));
+        if (wants(fields, EMAIL)) user.setEmail(getString(data, EMAIL));
+        if (wants(fields, PROFILE_IMAGE_URL)) user.setProfileImageUrl(getString(data, PROFILE_IMAGE_URL));
+        if (wants(fields, BIO)) user.setBio(getString(data, BIO));
+        if (wants(fields, PHONE)) user.setPhone(getString(data, PHONE));
+        if (wants(fields, FAVORITES)) {
+            List<String> favorites = getStringList(data, FAVORITES);
+            if (favorites != null) {
+                user.setFavorites(favorites);
+            }
+        }
+        return user;
+    }
+}
@@ -0,0 +1,189 @@
+package com.app.chatori.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.firebase.Timestamp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers how far the stall catalog has been synced, across app launches.
+ * The watermarks are the newest "updatedAt" of a stall and "deletedAt" of a
+ * tombstone seen from the server, so a cold start only asks for what changed
+ * after them. The IDs of tombstoned stalls are kept too, because Firestore's
+ * cache still holds those stalls and a cold start must leave them out.
+ * Dishes have a watermark of their own.
+ */
+public class CatalogSyncState {
+    private static final String PREFS_NAME = "catalog_sync";
+    private static final String KEY_STALLS_SECONDS = "stalls_seconds";
+    private static final String KEY_STALLS_NANOS = "stalls_nanos";
+    private static final String KEY_TOMBSTONES_SECONDS = "tombstones_seconds";
+    private static final String KEY_TOMBSTONES_NANOS = "tombstones_nanos";
+    private static final String KEY_STALL_COUNT = "stall_count";
+    private static final String KEY_TOMBSTONE_IDS = "tombstone_ids";
+    private static final String KEY_DISHES_SECONDS = "dishes_seconds";
+    private static final String KEY_DISHES_NANOS = "dishes_nanos";
+    private static final String KEY_DISH_COUNT = "dish_count";
+    // Past this many tombstone IDs the state is reset, so the next launch
+    // reads the whole catalog from the server and starts a fresh list
+    private static final int MAX_TOMBSTONE_IDS = 1000;
+
+    private final SharedPreferences prefs;
+
+    // Singleton instance, null until init() is called
+    private static CatalogSyncState instance;
+
+    private CatalogSyncState(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Sets up the sync state, called once from the Application
+     * @param context Any context, the application context is kept
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new CatalogSyncState(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * @return The sync state, or null if init() was not called
+     */
+    public static synchronized CatalogSyncState getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return Newest stall updatedAt synced from the server, or null if the catalog was never synced
+     */
+    public synchronized Timestamp getStallsWatermark() {
+        return readTimestamp(KEY_STALLS_SECONDS, KEY_STALLS_NANOS);
+    }
+
+    /**
+     * @return Newest tombstone deletedAt synced from the server, or null if none was seen
+     */
+    public synchronized Timestamp getTombstonesWatermark() {
+        return readTimestamp(KEY_TOMBSTONES_SECONDS, KEY_TOMBSTONES_NANOS);
+    }
+
+    /**
+     * @return Number of stalls in the catalog at the last sync
+     */
+    public synchronized int getStallCount() {
+        return prefs.getInt(KEY_STALL_COUNT, 0);
+    }
+
+    /**
+     * Moves the stall watermark forward, never back
+     * @param watermark Newest updatedAt seen from the server
+     * @param stallCount Number of stalls in the catalog now
+     */
+    public synchronized void advanceStalls(Timestamp watermark, int stallCount) {
+        Timestamp current = getStallsWatermark();
+        SharedPreferences.Editor editor = prefs.edit().putInt(KEY_STALL_COUNT, stallCount);
+        if (watermark != null && (current == null || watermark.compareTo(current) > 0)) {
+            editor.putLong(KEY_STALLS_SECONDS, watermark.getSeconds())
+                    .putInt(KEY_STALLS_NANOS, watermark.getNanoseconds());
+        }
+        editor.apply();
+    }
+
+    /**
+     * Moves the tombstone watermark forward, never back
+     * @param watermark Newest deletedAt seen from the server
+     * @param stallCount Number of stalls in the catalog now
+     */
+    public synchronized void advanceTombstones(Timestamp watermark, int stallCount) {
+        Timestamp current = getTombstonesWatermark();
+        SharedPreferences.Editor editor = prefs.edit().putInt(KEY_STALL_COUNT, stallCount);
+        if (watermark != null && (current == null || watermark.compareTo(current) > 0)) {
+            editor.putLong(KEY_TOMBSTONES_SECONDS, watermark.getSeconds())
+                    .putInt(KEY_TOMBSTONES_NANOS, watermark.getNanoseconds());
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return IDs of the stalls deleted since the last full read
+     */
+    public synchronized Set<String> getTombstoneIds() {
+        return Collections.unmodifiableSet(prefs.getStringSet(KEY_TOMBSTONE_IDS, Collections.emptySet()));
+    }
+
+    /**
+     * Remembers stalls that were deleted, so a cache rebuild leaves them out
+     * @param stallIds IDs of the deleted stalls
+     */
+    public synchronized void addTombstoneIds(Collection<String> stallIds) {
+        if (stallIds.isEmpty()) return;
+
+        Set<String> ids = new HashSet<>(prefs.getStringSet(KEY_TOMBSTONE_IDS, Collections.emptySet()));
+        if (!ids.addAll(stallIds)) return;
+        if (ids.size() > MAX_TOMBSTONE_IDS) {
+            reset();
+            return;
+        }
+        prefs.edit().putStringSet(KEY_TOMBSTONE_IDS, ids).apply();
+    }
+
+    /**
+     * @return Newest dish updatedAt synced from the server, or null if the dishes were never synced
+     */
+    public synchronized Timestamp getDishesWatermark() {
+        return readTimestamp(KEY_DISHES_SECONDS, KEY_DISHES_NANOS);
+    }
+
+    /**
+     * @return Number of dishes seen at the last sync
+     */
+    public synchronized int getDishCount() {
+        return prefs.getInt(KEY_DISH_COUNT, 0);
+    }
+
+    /**
+     * Moves the dish watermark forward, never back
+     * @param watermark Newest updatedAt seen from the server
+     * @param dishCount Number of dishes known now
+     */
+    public synchronized void advanceDishes(Timestamp watermark, int dishCount) {
+        Timestamp current = getDishesWatermark();
+        SharedPreferences.Editor editor = prefs.edit().putInt(KEY_DISH_COUNT, dishCount);
+        if (watermark != null && (current == null || watermark.compareTo(current) > 0)) {
+            editor.putLong(KEY_DISHES_SECONDS, watermark.getSeconds())
+                    .putInt(KEY_DISHES_NANOS, watermark.getNanoseconds());
+        }
+        editor.apply();
+    }
+
+    /**
+     * Forgets the dish watermark so the next load reads every dish
+     */
+    public synchronized void resetDishes() {
+        prefs.edit()
+                .remove(KEY_DISHES_SECONDS)
+                .remove(KEY_DISHES_NANOS)
+                .remove(KEY_DISH_COUNT)
+                .apply();
+    }
+
+    /**
+     * Forgets every watermark so the next launch reads the whole catalog
+     */
+    public synchronized void reset() {
+        prefs.edit().clear().apply();
+    }
+
+    private Timestamp readTimestamp(String secondsKey, String nanosKey) {
+        if (!prefs.contains(secondsKey)) {
+            return null;
+        }
+        return new Timestamp(prefs.getLong(secondsKey, 0), prefs.getInt(nanosKey, 0));
+    }
+}
@@ -1,10 +1,18 @@
 package com.app.chatori.repository;
 
 import com.app.chatori.model.Dish;
+import com.app.chatori.model.DishCodec;
 import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Repository class for handling Dish data operations with Firestore.
@@ -39,14 +47,43 @@ public class DishRepository {
                 .get();
     }
     
+    /**
+     * Gets the dishes held in Firestore's local cache, without reading the server
+     * @return Task containing the cached dishes
+     */
+    public Task<QuerySnapshot> getCachedDishes() {
+        return db.collection(COLLECTION_DISHES)
+                .get(Source.CACHE);
+    }
+    
+    /**
+     * Gets the dishes written after a point in time
+     * @param since Only dishes with a later updatedAt are returned
+     * @return Task containing the new or changed dishes
+     */
+    public Task<QuerySnapshot> getDishesUpdatedAfter(Timestamp since) {
+        return db.collection(COLLECTION_DISHES)
+                .whereGreaterThan(DishCodec.UPDATED_AT, since)
+                .get();
+    }
+    
     /**
      * Creates a new dish in Firestore
      * @param dish Dish object to create
      * @return Task containing the document reference
      */
     public Task<DocumentReference> createDish(Dish dish) {
-        return db.collection(COLLECTION_DISHES)
-                .add(dish);
+        // Store the document ID on the dish, as reviews do
+        DocumentReference dishRef = db.collection(COLLECTION_DISHES).document();
+        dish.setDishId(dishRef.getId());
+        // Let the server stamp the write
+        dish.setUpdatedAt(null);
+        return dishRef.set(dish).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return dishRef;
+        });
     }
     
     /**
@@ -86,4 +123,28 @@ public class DishRepository {
                 .whereEqualTo("stallId", stallId)
                 .get();
     }
+    
+    /**
+     * Gets the dishes of a stall, decoded off the main thread
+     * @param stallId ID of the stall
+     * @return Task containing the stall's dishes
+     */
+    public Task<List<Dish>> getDishes(String stallId) {
+        return getDishesByStallId(stallId).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            SnapshotDecoder.Timing timing = SnapshotDecoder.start("dishes");
+            List<Dish> dishes = new ArrayList<>(task.getResult().size());
+            for (DocumentSnapshot document : task.getResult()) {
+                Dish dish = DishCodec.decode(document);
+                if (dish != null) {
+                    dishes.add(dish);
+                }
+            }
+            timing.finish(task.getResult().size());
+            return Collections.unmodifiableList(dishes);
+        });
+    }
 }
@@ -0,0 +1,44 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.Review;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of reviews, newest first, as returned by ReviewRepository.
+ * Pass the page's cursor back in to get the page after it.
+ */
+public class ReviewPage {
+    private final List<Review> reviews;
+    private final DocumentSnapshot cursor;
+    private final boolean hasMore;
+
+    ReviewPage(List<Review> reviews, DocumentSnapshot cursor, boolean hasMore) {
+        this.reviews = Collections.unmodifiableList(reviews);
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return Reviews in this page, newest first
+     */
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    /**
+     * @return Cursor for the next page, or null if this page was empty
+     */
+    public DocumentSnapshot getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return True if there may be more reviews after this page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
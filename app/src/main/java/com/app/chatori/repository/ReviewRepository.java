@@ -1,17 +1,26 @@
 package com.app.chatori.repository;
 
 import com.app.chatori.model.Review;
+import com.app.chatori.model.ReviewCodec;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Repository class for handling Review data operations with Firestore.
  */
 public class ReviewRepository {
     private static final String COLLECTION_REVIEWS = "Reviews";
+    // Default number of reviews per page
+    public static final int DEFAULT_PAGE_SIZE = 20;
     
     private final FirebaseFirestore db;
     private final StallRepository stallRepository;
@@ -32,23 +41,44 @@ public class ReviewRepository {
     }
     
     /**
-     * Creates a new review in Firestore and updates the stall's rating
-     * @param review Review object to create
-     * @return Task containing the document reference
+     * Creates a new review and adds its rating to the stall in one transaction.
+     * The review ID is generated up front and doubles as the idempotency key:
+     * the transaction writes the review and the increment only if the review
+     * document does not exist yet, so however often the same review is
+     * submitted, its rating is counted exactly once. Only the review document
+     * is read, so concurrent reviews of one stall do not contend.
+     * Transactions need the server, so submitting fails while offline.
+     * @param review Review object to create, its ID is generated if missing
+     * @return Task containing the document reference, completed once the transaction is committed
      */
     public Task<DocumentReference> createReview(Review review) {
-        // First add the review
-        return db.collection(COLLECTION_REVIEWS)
-                .add(review)
-                .addOnSuccessListener(documentReference -> {
-                    // Set the review ID
-                    String reviewId = documentReference.getId();
-                    review.setReviewId(reviewId);
-                    documentReference.set(review);
-                    
-                    // Update the stall's rating
-                    stallRepository.updateStallRating(review.getStallId(), review.getRating());
-                });
+        if (review.getReviewId() == null || review.getReviewId().isEmpty()) {
+            review.setReviewId(generateReviewId());
+        }
+        DocumentReference reviewRef = db.collection(COLLECTION_REVIEWS).document(review.getReviewId());
+        DocumentReference stallRef = stallRepository.getStallReference(review.getStallId());
+        
+        return stallRepository.ratingUpdate(review.getStallId(), review.getRating()).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            Map<String, Object> increment = task.getResult();
+            return db.runTransaction(transaction -> {
+                if (transaction.get(reviewRef).exists()) {
+                    // An earlier attempt already counted this review
+                    return null;
+                }
+                transaction.set(reviewRef, review);
+                transaction.update(stallRef, increment);
+                return null;
+            });
+        }).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            stallRepository.evictStall(review.getStallId());
+            return reviewRef;
+        });
     }
     
     /**
@@ -86,6 +116,78 @@ public class ReviewRepository {
                 .get();
     }
     
+    /**
+     * Gets the newest reviews of a stall, decoded off the main thread
+     * @param stallId ID of the stall
+     * @param limit Maximum number of reviews to retrieve
+     * @return Task containing the reviews, newest first
+     */
+    public Task<List<Review>> getRecentReviews(String stallId, int limit) {
+        return getReviewsByStallId(stallId, limit).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return Collections.unmodifiableList(decode(task.getResult().getDocuments(), "recentReviews"));
+        });
+    }
+    
+    /**
+     * Gets one page of reviews for a stall, newest first
+     * @param stallId ID of the stall
+     * @param after Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of reviews in the page
+     * @return Task containing the page of reviews
+     */
+    public Task<ReviewPage> getReviewsPageByStall(String stallId, DocumentSnapshot after, int pageSize) {
+        return page(db.collection(COLLECTION_REVIEWS)
+                .whereEqualTo("stallId", stallId), after, pageSize);
+    }
+    
+    /**
+     * Gets one page of reviews by a user, newest first
+     * @param userId ID of the user
+     * @param after Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of reviews in the page
+     * @return Task containing the page of reviews
+     */
+    public Task<ReviewPage> getReviewsPageByUser(String userId, DocumentSnapshot after, int pageSize) {
+        return page(db.collection(COLLECTION_REVIEWS)
+                .whereEqualTo("userId", userId), after, pageSize);
+    }
+    
+    /**
+     * Orders a review query newest first, limits it to the page after a cursor
+     * and decodes the page off the main thread
+     */
+    private Task<ReviewPage> page(Query query, DocumentSnapshot after, int pageSize) {
+        query = query.orderBy("timestamp", Query.Direction.DESCENDING);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+        return query.limit(pageSize).get().continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            return new ReviewPage(decode(documents, "reviewsPage"), last, documents.size() >= pageSize);
+        });
+    }
+    
+    private static List<Review> decode(List<DocumentSnapshot> documents, String label) {
+        SnapshotDecoder.Timing timing = SnapshotDecoder.start(label);
+        List<Review> reviews = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            Review review = ReviewCodec.decode(document);
+            if (review != null) {
+                reviews.add(review);
+            }
+        }
+        timing.finish(documents.size());
+        return reviews;
+    }
+    
     /**
      * Gets reviews by a specific user
      * @param userId ID of the user
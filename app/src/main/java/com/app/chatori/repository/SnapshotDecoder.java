@@ -0,0 +1,94 @@
+package com.app.chatori.repository;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background threads for turning Firestore snapshots into model objects.
+ * Repositories run their decoding continuations here with
+ * continueWith(SnapshotDecoder.EXECUTOR, ...), so screens receive finished,
+ * immutable lists and the main thread only binds them.
+ *
+ * Every decode shows up as a "decode:" section in system traces. Timings are
+ * also logged once enabled with: adb shell setprop log.tag.SnapshotDecoder DEBUG
+ */
+final class SnapshotDecoder {
+    private static final String TAG = "SnapshotDecoder";
+    // Two threads let a page decode while the catalog does, without crowding the UI thread
+    private static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Shared executor for decoding continuations
+     */
+    static final Executor EXECUTOR = newExecutor(THREAD_COUNT, "snapshot-decoder");
+
+    private SnapshotDecoder() {
+    }
+
+    /**
+     * Creates a single background thread for snapshots that must be applied in order,
+     * such as the updates of a snapshot listener
+     * @param name Name of the thread
+     * @return Executor running one task at a time, in submission order
+     */
+    static Executor newSerialExecutor(String name) {
+        return newExecutor(1, name);
+    }
+
+    private static Executor newExecutor(int threadCount, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, name));
+        // Let the threads go when the app is idle
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Starts timing one decode, finish it on the same thread
+     * @param label Name of the read, such as "stallsPage"
+     * @return Timing to finish once the models are built
+     */
+    static Timing start(String label) {
+        return new Timing(label);
+    }
+
+    /**
+     * One timed decode
+     */
+    static final class Timing {
+        private final String label;
+        private final long startNanos;
+
+        private Timing(String label) {
+            this.label = label;
+            Trace.beginSection("decode:" + label);
+            startNanos = SystemClock.elapsedRealtimeNanos();
+        }
+
+        /**
+         * Ends the trace section and logs the time taken
+         * @param count Number of documents decoded
+         */
+        void finish(int count) {
+            long elapsedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+            Trace.endSection();
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, String.format(Locale.US, "%s: %d documents in %.2f ms on %s",
+                        label, count, elapsedNanos / 1e6, Thread.currentThread().getName()));
+            }
+        }
+    }
+}
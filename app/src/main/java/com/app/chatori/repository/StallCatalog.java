@@ -0,0 +1,733 @@
+package com.app.chatori.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.app.chatori.model.CategoryDictionary;
+import com.app.chatori.model.Dish;
+import com.app.chatori.model.DishCodec;
+import com.app.chatori.model.Stall;
+import com.app.chatori.model.StallCodec;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Process-wide in-memory copy of the "Stalls" collection.
+ * Owned by StallRepository and shared by every screen, so the collection is
+ * read and deserialized once, on a background thread, instead of once per
+ * screen. Delta listeners keep it current by applying only the stalls updated
+ * or deleted since the last sync, and change listeners get those changes as a
+ * ChangeSet. The same changes are written to the on-device StallDatabase mirror.
+ */
+public class StallCatalog {
+
+    /**
+     * Receives the stalls that changed in one catalog update, on the main thread
+     */
+    public interface ChangeListener {
+        void onChanges(ChangeSet changes);
+    }
+
+    /**
+     * Stalls added, modified and removed by one snapshot
+     */
+    public static class ChangeSet {
+        private final List<Stall> added = new ArrayList<>();
+        private final List<Stall> modified = new ArrayList<>();
+        private final List<Stall> removed = new ArrayList<>();
+        // Stall ID to the stall as it was before a modification or removal
+        private final Map<String, Stall> previous = new HashMap<>();
+
+        public List<Stall> getAdded() {
+            return added;
+        }
+
+        public List<Stall> getModified() {
+            return modified;
+        }
+
+        public List<Stall> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Gets a modified or removed stall as it was before this change
+         * @param stallId ID of the stall
+         * @return The earlier stall, or null if the stall was added
+         */
+        public Stall getPrevious(String stallId) {
+            return previous.get(stallId);
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    static final String FIELD_UPDATED_AT = "updatedAt";
+    static final String FIELD_DELETED_AT = "deletedAt";
+    // Delta queries reach this far behind the watermark, so a write that
+    // committed just before it but was not seen yet is still picked up
+    private static final long WATERMARK_OVERLAP_SECONDS = 60;
+
+    private final CollectionReference stallsCollection;
+    private final CollectionReference tombstonesCollection;
+    // Full catalog, highest rated first
+    private final Query query;
+
+    // LiveData holding an immutable snapshot of all stalls
+    private final MutableLiveData<List<Stall>> stallsLiveData = new MutableLiveData<>();
+
+    // Word and prefix index over the catalog, kept in step with the snapshot
+    private final StallSearchIndex searchIndex = new StallSearchIndex();
+    // Typo-tolerant index over the same fields plus dish tags
+    private final StallFuzzyIndex fuzzyIndex = new StallFuzzyIndex();
+    // Dish type, area and rating counts for the search filters
+    private final StallFacets facets = new StallFacets();
+
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // Snapshots are decoded and applied here, one at a time and in the order they arrive
+    private final Executor executor = SnapshotDecoder.newSerialExecutor("stall-catalog");
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private List<Stall> stalls = Collections.emptyList();
+    private final Map<String, Stall> stallsById = new HashMap<>();
+    private Task<List<Stall>> loadTask;
+    private ListenerRegistration stallsRegistration;
+    private ListenerRegistration tombstonesRegistration;
+
+    /**
+     * @param stallsCollection The "Stalls" collection
+     * @param tombstonesCollection Collection holding one tombstone per deleted stall
+     */
+    StallCatalog(CollectionReference stallsCollection, CollectionReference tombstonesCollection) {
+        this.stallsCollection = stallsCollection;
+        this.tombstonesCollection = tombstonesCollection;
+        this.query = stallsCollection.orderBy("rating", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Loads the catalog if it has not been loaded yet, then keeps it current.
+     * After the first launch the catalog is rebuilt from Firestore's local cache
+     * and only stalls updated or deleted since the last sync are read from the server.
+     * Concurrent callers share the same in-flight load.
+     * @return Task containing the immutable list of stalls
+     */
+    public synchronized Task<List<Stall>> load() {
+        if (loadTask == null || (loadTask.isComplete() && !loadTask.isSuccessful())) {
+            loadTask = readBase().continueWith(executor, task -> {
+                if (!task.isSuccessful()) {
+                    throw task.getException();
+                }
+
+                QuerySnapshot snapshot = task.getResult();
+                // Decode before taking the lock, so lookups from the UI are not held up
+                SnapshotDecoder.Timing timing = SnapshotDecoder.start("catalog");
+                List<DocumentSnapshot> documents = liveDocuments(snapshot);
+                List<Stall> loaded = new ArrayList<>(documents.size());
+                for (DocumentSnapshot document : documents) {
+                    loaded.add(decode(document));
+                }
+                timing.finish(loaded.size());
+
+                synchronized (StallCatalog.this) {
+                    for (Stall stall : stallsById.values()) {
+                        releaseCategories(stall);
+                    }
+                    stallsById.clear();
+                    for (Stall stall : loaded) {
+                        stallsById.put(stall.getStallId(), stall);
+                        retainCategories(stall);
+                    }
+                    searchIndex.rebuild(loaded);
+                    fuzzyIndex.rebuild(loaded);
+                    facets.rebuild(loaded);
+                    publish(loaded);
+                    loadDishTags();
+
+                    // A cache rebuild matches what the mirror already holds
+                    StallDatabase database = StallDatabase.getInstance();
+                    if (database != null && (!database.isPopulated() || !snapshot.getMetadata().isFromCache())) {
+                        database.replaceAll(loaded);
+                    }
+
+                    CatalogSyncState syncState = CatalogSyncState.getInstance();
+                    if (syncState != null && !snapshot.getMetadata().isFromCache()) {
+                        // A full server read is synced up to its newest stall,
+                        // and already reflects every delete before that
+                        Timestamp newest = newest(snapshot.getDocuments(), FIELD_UPDATED_AT);
+                        syncState.advanceStalls(newest, loaded.size());
+                        syncState.advanceTombstones(newest, loaded.size());
+                    }
+
+                    listenForChanges();
+                    return stalls;
+                }
+            });
+        } else if (loadTask.isSuccessful()) {
+            // Restart the delta listeners if they stopped on an error
+            listenForChanges();
+        }
+        return loadTask;
+    }
+
+    /**
+     * Reads the full catalog, from the local cache when an earlier sync left a
+     * watermark and the cache still holds every stall, otherwise from the server
+     */
+    private Task<QuerySnapshot> readBase() {
+        CatalogSyncState syncState = CatalogSyncState.getInstance();
+        if (syncState == null || syncState.getStallsWatermark() == null) {
+            return query.get();
+        }
+
+        int expectedCount = syncState.getStallCount();
+        return query.get(Source.CACHE).continueWithTask(task -> {
+            if (task.isSuccessful() && !task.getResult().isEmpty()
+                    && liveDocuments(task.getResult()).size() >= expectedCount) {
+                return Tasks.forResult(task.getResult());
+            }
+            // The cache was cleared or evicted, start over with a full read
+            syncState.reset();
+            return query.get();
+        });
+    }
+
+    /**
+     * Drops the documents of deleted stalls from a cache read. Firestore keeps a
+     * deleted stall in its cache, since no active query saw it go, and its
+     * tombstone is older than the watermark, so it would otherwise come back.
+     */
+    private static List<DocumentSnapshot> liveDocuments(QuerySnapshot snapshot) {
+        CatalogSyncState syncState = CatalogSyncState.getInstance();
+        if (syncState == null || !snapshot.getMetadata().isFromCache()) {
+            return snapshot.getDocuments();
+        }
+        Set<String> deletedIds = syncState.getTombstoneIds();
+        if (deletedIds.isEmpty()) {
+            return snapshot.getDocuments();
+        }
+        
+        List<DocumentSnapshot> live = new ArrayList<>(snapshot.size());
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            if (!deletedIds.contains(document.getId())) {
+                live.add(document);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Listens for stalls updated and tombstones written after the watermarks.
+     * The first snapshots bring the catalog up to date, later ones carry live changes.
+     */
+    private synchronized void listenForChanges() {
+        if (stallsRegistration != null) return;
+
+        CatalogSyncState syncState = CatalogSyncState.getInstance();
+        Timestamp stallsSince = withOverlap(syncState != null ? syncState.getStallsWatermark() : null);
+        Timestamp tombstonesSince = withOverlap(syncState != null ? syncState.getTombstonesWatermark() : null);
+
+        stallsRegistration = stallsCollection
+                .whereGreaterThan(FIELD_UPDATED_AT, stallsSince)
+                .addSnapshotListener(executor, (snapshot, e) -> {
+                    if (e != null) {
+                        onListenFailed();
+                    } else if (snapshot != null) {
+                        onStallChanges(snapshot);
+                    }
+                });
+        tombstonesRegistration = tombstonesCollection
+                .whereGreaterThan(FIELD_DELETED_AT, tombstonesSince)
+                .addSnapshotListener(executor, (snapshot, e) -> {
+                    if (e != null) {
+                        onListenFailed();
+                    } else if (snapshot != null) {
+                        onTombstones(snapshot);
+                    }
+                });
+    }
+
+    /**
+     * Applies stalls that were added or updated. Deletes arrive as tombstones,
+     * so a stall leaving this query is ignored.
+     */
+    private void onStallChanges(QuerySnapshot snapshot) {
+        SnapshotDecoder.Timing timing = SnapshotDecoder.start("catalogChanges");
+        List<Stall> changed = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            if (change.getType() != DocumentChange.Type.REMOVED) {
+                changed.add(decode(change.getDocument()));
+            }
+        }
+        timing.finish(changed.size());
+
+        ChangeSet changes = new ChangeSet();
+        synchronized (this) {
+            List<Stall> updated = new ArrayList<>(stalls);
+            for (Stall stall : changed) {
+                upsertLocked(updated, stall, changes);
+            }
+            if (!changes.isEmpty()) {
+                publish(updated);
+            }
+
+            CatalogSyncState syncState = CatalogSyncState.getInstance();
+            if (syncState != null && isSynced(snapshot)) {
+                syncState.advanceStalls(newest(snapshot.getDocuments(), FIELD_UPDATED_AT), stalls.size());
+            }
+        }
+        dispatch(changes);
+    }
+
+    /**
+     * Removes the stalls named by new tombstones
+     */
+    private void onTombstones(QuerySnapshot snapshot) {
+        ChangeSet changes = new ChangeSet();
+        List<String> deletedIds = new ArrayList<>();
+        synchronized (this) {
+            List<Stall> updated = new ArrayList<>(stalls);
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                if (change.getType() == DocumentChange.Type.ADDED) {
+                    // Tombstones use the deleted stall's ID as their document ID
+                    deletedIds.add(change.getDocument().getId());
+                    removeLocked(updated, change.getDocument().getId(), changes);
+                }
+            }
+            if (!changes.isEmpty()) {
+                publish(updated);
+            }
+
+            CatalogSyncState syncState = CatalogSyncState.getInstance();
+            if (syncState != null) {
+                syncState.addTombstoneIds(deletedIds);
+            }
+            if (syncState != null && isSynced(snapshot)) {
+                syncState.advanceTombstones(newest(snapshot.getDocuments(), FIELD_DELETED_AT), stalls.size());
+            }
+        }
+        dispatch(changes);
+    }
+
+    /**
+     * Listen errors end a listener, so drop both and let the next load() start them again
+     */
+    private synchronized void onListenFailed() {
+        if (stallsRegistration != null) {
+            stallsRegistration.remove();
+            stallsRegistration = null;
+        }
+        if (tombstonesRegistration != null) {
+            tombstonesRegistration.remove();
+            tombstonesRegistration = null;
+        }
+    }
+
+    /**
+     * Only server data with no local writes pending can move a watermark
+     */
+    private static boolean isSynced(QuerySnapshot snapshot) {
+        return !snapshot.getMetadata().isFromCache() && !snapshot.getMetadata().hasPendingWrites();
+    }
+
+    private static Timestamp newest(List<DocumentSnapshot> documents, String field) {
+        Timestamp newest = null;
+        for (DocumentSnapshot document : documents) {
+            Timestamp value = document.getTimestamp(field);
+            if (value != null && (newest == null || value.compareTo(newest) > 0)) {
+                newest = value;
+            }
+        }
+        return newest;
+    }
+
+    private static Timestamp withOverlap(Timestamp watermark) {
+        if (watermark == null) {
+            return new Timestamp(0, 0);
+        }
+        return new Timestamp(Math.max(0, watermark.getSeconds() - WATERMARK_OVERLAP_SECONDS), watermark.getNanoseconds());
+    }
+
+    private static Stall decode(DocumentSnapshot document) {
+        Stall stall = StallCodec.decode(document);
+        if (stall.getStallId() == null) {
+            stall.setStallId(document.getId());
+        }
+        return stall;
+    }
+
+    private void dispatch(ChangeSet changes) {
+        if (changes.isEmpty()) return;
+
+        StallDatabase database = StallDatabase.getInstance();
+        if (database != null) {
+            List<Stall> written = new ArrayList<>(changes.added);
+            written.addAll(changes.modified);
+            database.upsert(written);
+            List<String> removedIds = new ArrayList<>(changes.removed.size());
+            for (Stall stall : changes.removed) {
+                removedIds.add(stall.getStallId());
+            }
+            database.remove(removedIds);
+        }
+
+        mainHandler.post(() -> {
+            for (ChangeListener listener : changeListeners) {
+                listener.onChanges(changes);
+            }
+        });
+    }
+
+    /**
+     * Registers a listener for the changes applied after the catalog is loaded
+     * @param listener Listener to add
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a change listener
+     * @param listener Listener to remove
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Loads the tags of every dish and adds them to the fuzzy index of its stall.
+     * After the first sync the dishes come from Firestore's local cache, and only
+     * dishes written since the dish watermark are read from the server.
+     */
+    private void loadDishTags() {
+        DishRepository dishRepository = DishRepository.getInstance();
+        CatalogSyncState syncState = CatalogSyncState.getInstance();
+        Timestamp since = syncState != null ? syncState.getDishesWatermark() : null;
+        if (since == null) {
+            dishRepository.getAllDishes().addOnSuccessListener(executor, snapshot -> {
+                applyDishTags(snapshot.getDocuments());
+                if (syncState != null && isSynced(snapshot)) {
+                    // Dishes saved before updatedAt existed are only in this read,
+                    // so a watermark is kept even when none of them has one
+                    Timestamp newest = newest(snapshot.getDocuments(), FIELD_UPDATED_AT);
+                    syncState.advanceDishes(newest != null ? newest : new Timestamp(0, 0), snapshot.size());
+                }
+            });
+            return;
+        }
+
+        int expectedCount = syncState.getDishCount();
+        Task<QuerySnapshot> cached = dishRepository.getCachedDishes();
+        Task<QuerySnapshot> changed = dishRepository.getDishesUpdatedAfter(withOverlap(since));
+        Tasks.whenAllComplete(cached, changed).addOnSuccessListener(executor, tasks -> {
+            if (!cached.isSuccessful() || cached.getResult().size() < expectedCount) {
+                // The cache was cleared or evicted, read every dish again
+                syncState.resetDishes();
+                loadDishTags();
+                return;
+            }
+
+            // Later writes replace the cached copy of the same dish
+            Map<String, DocumentSnapshot> dishes = new LinkedHashMap<>();
+            for (DocumentSnapshot document : cached.getResult()) {
+                dishes.put(document.getId(), document);
+            }
+            if (changed.isSuccessful()) {
+                for (DocumentSnapshot document : changed.getResult()) {
+                    dishes.put(document.getId(), document);
+                }
+            }
+            applyDishTags(dishes.values());
+
+            if (changed.isSuccessful() && isSynced(changed.getResult())) {
+                syncState.advanceDishes(newest(changed.getResult().getDocuments(), FIELD_UPDATED_AT), dishes.size());
+            }
+        });
+    }
+
+    /**
+     * Groups dish tags by stall and gives each stall its tags in the fuzzy index and the mirror
+     */
+    private void applyDishTags(Collection<DocumentSnapshot> documents) {
+        Map<String, List<String>> tagsByStall = new HashMap<>();
+        for (DocumentSnapshot document : documents) {
+            Dish dish = DishCodec.decode(document, DishCodec.TAG_FIELDS);
+            if (dish == null || dish.getStallId() == null || dish.getTags() == null) continue;
+
+            List<String> tags = tagsByStall.get(dish.getStallId());
+            if (tags == null) {
+                tags = new ArrayList<>();
+                tagsByStall.put(dish.getStallId(), tags);
+            }
+            tags.addAll(dish.getTags());
+        }
+
+        StallDatabase database = StallDatabase.getInstance();
+        for (Map.Entry<String, List<String>> entry : tagsByStall.entrySet()) {
+            fuzzyIndex.setTags(entry.getKey(), entry.getValue());
+            if (database != null) {
+                database.setTags(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forces the catalog to be reloaded from the server
+     * @return Task containing the immutable list of stalls
+     */
+    public synchronized Task<List<Stall>> refresh() {
+        onListenFailed();
+        CatalogSyncState syncState = CatalogSyncState.getInstance();
+        if (syncState != null) {
+            syncState.reset();
+        }
+        loadTask = null;
+        return load();
+    }
+
+    /**
+     * Gets the catalog as LiveData, loading it on first use
+     * @return LiveData containing an immutable list of all stalls
+     */
+    public LiveData<List<Stall>> getStalls() {
+        load();
+        return stallsLiveData;
+    }
+
+    /**
+     * Gets the current snapshot without triggering a load
+     * @return Immutable list of stalls, empty if not loaded yet
+     */
+    public synchronized List<Stall> getSnapshot() {
+        return stalls;
+    }
+
+    /**
+     * Gets a stall from the current snapshot by its ID
+     * @param stallId ID of the stall
+     * @return The stall, or null if it is not in the snapshot
+     */
+    public synchronized Stall getStall(String stallId) {
+        return stallsById.get(stallId);
+    }
+
+    /**
+     * Searches the catalog by name, dish type and area using the inverted index
+     * @param query Search query, each word matched as a word prefix
+     * @return Matching stalls in no particular order
+     */
+    public synchronized List<Stall> search(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Narrows an earlier search result to a query that extends the earlier one.
+     * Every stall matching the longer query also matched the shorter one, so
+     * only the earlier results have to be checked.
+     * @param previousResults Results of search() for the earlier query
+     * @param query The extended query
+     * @return Stalls from previousResults that match the query
+     */
+    public List<Stall> narrow(List<Stall> previousResults, String query) {
+        List<String> tokens = StallSearchIndex.tokenize(query);
+        List<Stall> results = new ArrayList<>();
+        for (Stall stall : previousResults) {
+            if (StallSearchIndex.matches(stall, tokens)) {
+                results.add(stall);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Searches the catalog allowing typos, synonyms and dish tags
+     * @param query Search query
+     * @return Matching stalls, best match first
+     */
+    public List<Stall> fuzzySearch(String query) {
+        return fuzzyIndex.search(query);
+    }
+
+    /**
+     * Narrows earlier fuzzy results to a query that extends the earlier one,
+     * see StallFuzzyIndex.extendsQuery
+     * @param previousResults Results of fuzzySearch() for the earlier query
+     * @param query The extended query
+     * @return Matching stalls from previousResults, best match first
+     */
+    public List<Stall> fuzzyNarrow(List<Stall> previousResults, String query) {
+        return fuzzyIndex.searchWithin(previousResults, query, StallFuzzyIndex.DEFAULT_LIMIT);
+    }
+
+    /**
+     * Gets the filter facet counts of the catalog, kept current with every change
+     * @return Facets of the loaded catalog, empty until it is loaded
+     */
+    public StallFacets getFacets() {
+        return facets;
+    }
+
+    /**
+     * Gets the current load without starting one
+     * @return Task of the load in flight or already done, or null if load() was never called
+     */
+    public synchronized Task<List<Stall>> getLoadTask() {
+        return loadTask;
+    }
+
+    /**
+     * Checks if the catalog has been loaded
+     * @return True if a snapshot is available
+     */
+    public synchronized boolean isLoaded() {
+        return loadTask != null && loadTask.isSuccessful();
+    }
+
+    /**
+     * Adds or replaces a stall after a local write.
+     * The delta listener delivers the same write later, which is then a no-op.
+     * @param stall Stall that was written
+     */
+    void upsert(Stall stall) {
+        if (stall == null || stall.getStallId() == null) return;
+
+        ChangeSet changes = new ChangeSet();
+        synchronized (this) {
+            // Not loaded yet, the next load will include the write
+            if (loadTask == null) return;
+
+            List<Stall> updated = new ArrayList<>(stalls);
+            upsertLocked(updated, stall, changes);
+            if (changes.isEmpty()) return;
+            publish(updated);
+        }
+        dispatch(changes);
+    }
+
+    /**
+     * Removes a stall after a local delete
+     * @param stallId ID of the stall that was removed
+     */
+    void remove(String stallId) {
+        ChangeSet changes = new ChangeSet();
+        synchronized (this) {
+            List<Stall> updated = new ArrayList<>(stalls);
+            removeLocked(updated, stallId, changes);
+            if (changes.isEmpty()) return;
+            publish(updated);
+        }
+        dispatch(changes);
+    }
+
+    /**
+     * Puts a stall into the list and indexes, keeping the list highest rated first
+     */
+    private void upsertLocked(List<Stall> updated, Stall stall, ChangeSet changes) {
+        String stallId = stall.getStallId();
+        Stall old = stallsById.get(stallId);
+        if (old != null) {
+            // Same server write seen twice, for example a local write echoed by the listener
+            if (old != stall && old.getUpdatedAt() != null && old.getUpdatedAt().equals(stall.getUpdatedAt())) {
+                return;
+            }
+            updated.remove(indexOf(updated, stallId));
+            facets.remove(old);
+            releaseCategories(old);
+            changes.modified.add(stall);
+            changes.previous.put(stallId, old);
+        } else {
+            changes.added.add(stall);
+        }
+
+        updated.add(insertionPoint(updated, stall), stall);
+        stallsById.put(stallId, stall);
+        searchIndex.update(stall);
+        fuzzyIndex.update(stall);
+        facets.add(stall);
+        retainCategories(stall);
+    }
+
+    /**
+     * Drops a stall from the list and indexes
+     */
+    private void removeLocked(List<Stall> updated, String stallId, ChangeSet changes) {
+        Stall old = stallsById.remove(stallId);
+        if (old == null) return;
+
+        updated.remove(indexOf(updated, stallId));
+        searchIndex.remove(stallId);
+        fuzzyIndex.remove(stallId);
+        facets.remove(old);
+        releaseCategories(old);
+        changes.removed.add(old);
+        changes.previous.put(stallId, old);
+    }
+
+    /**
+     * Counts a catalog stall's dish type and area as in use, see CategoryDictionary.retain
+     */
+    private static void retainCategories(Stall stall) {
+        CategoryDictionary.DISH_TYPES.retain(stall.getDishType());
+        CategoryDictionary.AREAS.retain(stall.getArea());
+    }
+
+    private static void releaseCategories(Stall stall) {
+        CategoryDictionary.DISH_TYPES.release(stall.getDishType());
+        CategoryDictionary.AREAS.release(stall.getArea());
+    }
+
+    /**
+     * Finds where a stall goes in a list sorted highest rated first
+     */
+    private static int insertionPoint(List<Stall> list, Stall stall) {
+        float rating = stall.getRating();
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).getRating() >= rating) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int indexOf(List<Stall> list, String stallId) {
+        for (int i = 0; i < list.size(); i++) {
+            if (stallId.equals(list.get(i).getStallId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized void publish(List<Stall> updated) {
+        stalls = Collections.unmodifiableList(updated);
+        stallsLiveData.postValue(stalls);
+    }
+}
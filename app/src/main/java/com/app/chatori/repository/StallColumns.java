@@ -0,0 +1,332 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.CategoryDictionary;
+import com.app.chatori.model.Stall;
+import com.app.chatori.utils.LocationUtils;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only column store over a list of stalls, for the filter, sort and
+ * nearest loops that run on every filter change.
+ * The fields those loops need sit in parallel primitive arrays, so they scan
+ * contiguous memory instead of following pointers into each Stall.
+ * Dish types and areas are stored as their CategoryDictionary IDs.
+ * Queries take and return row indices; get() maps a row back to its stall.
+ * The store does not copy the stalls, rows are looked up in the source list,
+ * so that list must not change while the store is in use.
+ */
+public class StallColumns {
+    /** Category filter value that matches every row */
+    public static final int ANY = -2;
+
+    private final List<Stall> stalls;
+    // Latitude and longitude, NaN for stalls without a location
+    private final double[] lat;
+    private final double[] lon;
+    private final float[] rating;
+    private final int[] numRatings;
+    // CategoryDictionary IDs, NONE for stalls without a value
+    private final int[] dishTypeId;
+    private final int[] areaId;
+
+    // Stall IDs in sorted order and their rows, built on the first rowsOf() call
+    private String[] sortedIds;
+    private int[] sortedRows;
+
+    /**
+     * Copies the columns out of a list of stalls
+     * @param source Stalls to store, rows keep this order
+     */
+    public StallColumns(List<Stall> source) {
+        int size = source.size();
+        stalls = source;
+        lat = new double[size];
+        lon = new double[size];
+        rating = new float[size];
+        numRatings = new int[size];
+        dishTypeId = new int[size];
+        areaId = new int[size];
+
+        for (int row = 0; row < size; row++) {
+            Stall stall = source.get(row);
+            GeoPoint location = stall.getLocation();
+            lat[row] = location != null ? location.getLatitude() : Double.NaN;
+            lon[row] = location != null ? location.getLongitude() : Double.NaN;
+            rating[row] = stall.getRating();
+            numRatings[row] = stall.getNumRatings();
+            dishTypeId[row] = CategoryDictionary.DISH_TYPES.intern(stall.getDishType());
+            areaId[row] = CategoryDictionary.AREAS.intern(stall.getArea());
+        }
+    }
+
+    /**
+     * @return Number of stalls
+     */
+    public int size() {
+        return stalls.size();
+    }
+
+    /**
+     * @param row Row index
+     * @return The stall in that row
+     */
+    public Stall get(int row) {
+        return stalls.get(row);
+    }
+
+    /**
+     * @return Every row, in the order of the source list
+     */
+    public int[] allRows() {
+        int[] result = new int[stalls.size()];
+        for (int row = 0; row < result.length; row++) {
+            result[row] = row;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the rows of some stalls, skipping stalls not in this store
+     * @param list Stalls to look up
+     * @return Their rows, in the order of the list
+     */
+    public int[] rowsOf(List<Stall> list) {
+        if (sortedIds == null) {
+            indexIds();
+        }
+        int[] result = new int[list.size()];
+        int count = 0;
+        for (Stall stall : list) {
+            if (stall.getStallId() == null) continue;
+            int index = Arrays.binarySearch(sortedIds, stall.getStallId());
+            if (index >= 0) {
+                result[count++] = sortedRows[index];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Sorts the stall IDs alongside their rows, so rowsOf() can binary search
+     * them without boxing a map entry per stall
+     */
+    private void indexIds() {
+        Integer[] order = new Integer[stalls.size()];
+        int count = 0;
+        for (int row = 0; row < order.length; row++) {
+            if (stalls.get(row).getStallId() != null) {
+                order[count++] = row;
+            }
+        }
+        Arrays.sort(order, 0, count, (a, b) -> stalls.get(a).getStallId().compareTo(stalls.get(b).getStallId()));
+
+        String[] ids = new String[count];
+        int[] idRows = new int[count];
+        for (int i = 0; i < count; i++) {
+            idRows[i] = order[i];
+            ids[i] = stalls.get(idRows[i]).getStallId();
+        }
+        sortedRows = idRows;
+        sortedIds = ids;
+    }
+
+    /**
+     * Keeps the rows that match every filter, in their current order.
+     * Dish type and area are matched ignoring case and surrounding spaces.
+     * @param input Rows to filter
+     * @param dishType Dish type to match, empty for any
+     * @param area Area to match, empty for any
+     * @param minRating Minimum rating
+     * @return Matching rows
+     */
+    public int[] filter(int[] input, String dishType, String area, float minRating) {
+        int wantedDishType = dishType.isEmpty() ? ANY : CategoryDictionary.DISH_TYPES.find(dishType);
+        int wantedArea = area.isEmpty() ? ANY : CategoryDictionary.AREAS.find(area);
+        // A value no stall has ever had matches nothing
+        if (wantedDishType == CategoryDictionary.NONE || wantedArea == CategoryDictionary.NONE) {
+            return new int[0];
+        }
+        return filter(input, wantedDishType, wantedArea, minRating);
+    }
+
+    /**
+     * Keeps the rows that match every filter, in their current order
+     * @param input Rows to filter
+     * @param wantedDishType CategoryDictionary ID of the dish type, or ANY
+     * @param wantedArea CategoryDictionary ID of the area, or ANY
+     * @param minRating Minimum rating
+     * @return Matching rows
+     */
+    public int[] filter(int[] input, int wantedDishType, int wantedArea, float minRating) {
+        int[] result = new int[input.length];
+        int count = 0;
+        for (int row : input) {
+            if (rating[row] < minRating) continue;
+            if (wantedDishType != ANY && dishTypeId[row] != wantedDishType) continue;
+            if (wantedArea != ANY && areaId[row] != wantedArea) continue;
+            result[count++] = row;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Sorts rows highest rated first, keeping the current order between equal ratings
+     * @param input Rows to sort, left unchanged
+     * @return Sorted rows
+     */
+    public int[] sortByRating(int[] input) {
+        // Pack each row behind its rating so a primitive sort orders both.
+        // Ratings are never negative, so their bits sort like the values.
+        long[] keys = new long[input.length];
+        for (int i = 0; i < input.length; i++) {
+            int bits = Float.floatToIntBits(Math.max(0f, rating[input[i]]));
+            keys[i] = ((long) (Integer.MAX_VALUE - bits) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] result = new int[input.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = input[(int) keys[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Sorts rows nearest first, stalls without a location last
+     * @param input Rows to sort, left unchanged
+     * @param latitude Latitude to measure from
+     * @param longitude Longitude to measure from
+     * @return Sorted rows
+     */
+    public int[] sortByDistance(int[] input, double latitude, double longitude) {
+        long[] keys = new long[input.length];
+        for (int i = 0; i < input.length; i++) {
+            keys[i] = distanceKey(distanceKm(input[i], latitude, longitude), i);
+        }
+        Arrays.sort(keys);
+
+        int[] result = new int[input.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = input[(int) keys[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Finds the k rows nearest a point with a bounded max-heap, so only k rows are ever ordered
+     * @param input Rows to search
+     * @param latitude Latitude to measure from
+     * @param longitude Longitude to measure from
+     * @param k Maximum number of rows to return
+     * @return Nearest rows with a location, nearest first
+     */
+    public int[] nearest(int[] input, double latitude, double longitude, int k) {
+        if (k <= 0) return new int[0];
+
+        // heap[0] holds the farthest of the rows kept so far
+        long[] heap = new long[Math.min(k, input.length)];
+        int heapSize = 0;
+        for (int i = 0; i < input.length; i++) {
+            if (Double.isNaN(lat[input[i]])) continue;
+
+            long key = distanceKey(distanceKm(input[i], latitude, longitude), i);
+            if (heapSize < heap.length) {
+                heap[heapSize] = key;
+                siftUp(heap, heapSize++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        long[] keys = Arrays.copyOf(heap, heapSize);
+        Arrays.sort(keys);
+        int[] result = new int[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            result[i] = input[(int) keys[i]];
+        }
+        return result;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] >= heap[index]) return;
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] > heap[largest]) largest = left;
+            if (right < size && heap[right] > heap[largest]) largest = right;
+            if (largest == index) return;
+            swap(heap, index, largest);
+            index = largest;
+        }
+    }
+
+    private static void swap(long[] heap, int a, int b) {
+        long temp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = temp;
+    }
+
+    /**
+     * Packs a distance and a position into one sortable long, with distances
+     * as float bits, which order like the values for non-negative floats
+     */
+    private static long distanceKey(double distanceKm, int position) {
+        float distance = Double.isNaN(distanceKm) ? Float.MAX_VALUE : (float) distanceKm;
+        return ((long) Float.floatToIntBits(distance) << 32) | position;
+    }
+
+    /**
+     * @param row Row index
+     * @param latitude Latitude to measure from
+     * @param longitude Longitude to measure from
+     * @return Distance in kilometers, or NaN if the stall has no location
+     */
+    public double distanceKm(int row, double latitude, double longitude) {
+        if (Double.isNaN(lat[row])) return Double.NaN;
+        return LocationUtils.calculateDistance(latitude, longitude, lat[row], lon[row]);
+    }
+
+    /**
+     * @param row Row index
+     * @return The stall's rating
+     */
+    public float getRating(int row) {
+        return rating[row];
+    }
+
+    /**
+     * @param row Row index
+     * @return The stall's number of ratings
+     */
+    public int getNumRatings(int row) {
+        return numRatings[row];
+    }
+
+    /**
+     * Maps rows back to their stalls
+     * @param input Rows to map
+     * @return The stalls, in the order of the rows
+     */
+    public List<Stall> toStalls(int[] input) {
+        List<Stall> result = new ArrayList<>(input.length);
+        for (int row : input) {
+            result.add(stalls.get(row));
+        }
+        return result;
+    }
+}
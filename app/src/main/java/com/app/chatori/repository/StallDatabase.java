@@ -0,0 +1,454 @@
+package com.app.chatori.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+
+import com.app.chatori.model.CategoryDictionary;
+import com.app.chatori.model.Stall;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device SQLite mirror of the stall catalog.
+ * An FTS4 table answers text searches over name, dish type, area and dish tags,
+ * and an R*Tree table answers bounding-box queries, so lookups run as indexed
+ * SQL on a background thread instead of scanning lists.
+ * Kept in step by StallCatalog; every call returns immediately and the work
+ * runs in order on a single background thread.
+ */
+public class StallDatabase extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "stalls.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_STALLS = "stalls";
+    private static final String TABLE_FTS = "stalls_fts";
+    private static final String TABLE_GEO = "stalls_geo";
+    private static final String TABLE_META = "meta";
+    private static final String META_POPULATED = "populated";
+
+    private static final String[] STALL_COLUMNS = {
+            "stall_id", "name", "dish_type", "area", "latitude", "longitude", "geohash",
+            "images", "rating", "num_ratings", "rating_sum", "created_by", "description",
+            "opening_hours", "phone", "user_id", "owner_name", "created_at", "updated_at"
+    };
+
+    // All reads and writes run here, in submission order
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // False when this SQLite build has no R*Tree module; a lat/lng index is used instead
+    private boolean hasRTree;
+    private volatile boolean populated;
+
+    // Singleton instance, null until init() is called
+    private static StallDatabase instance;
+
+    private StallDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        executor.execute(() -> populated = readPopulated());
+    }
+
+    /**
+     * Opens the database, called once from the Application
+     * @param context Any context, the application context is kept
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new StallDatabase(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * @return The database, or null if init() was not called
+     */
+    public static synchronized StallDatabase getInstance() {
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STALLS + " ("
+                + "stall_id TEXT NOT NULL UNIQUE, name TEXT, dish_type TEXT, area TEXT, "
+                + "latitude REAL, longitude REAL, geohash TEXT, images TEXT, "
+                + "rating REAL, num_ratings INTEGER, rating_sum REAL, created_by TEXT, "
+                + "description TEXT, opening_hours TEXT, phone TEXT, user_id TEXT, "
+                + "owner_name TEXT, created_at INTEGER, updated_at INTEGER)");
+        db.execSQL("CREATE INDEX stalls_rating ON " + TABLE_STALLS + " (rating)");
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_FTS
+                + " USING fts4(name, dish_type, area, tags, tokenize=unicode61)");
+        db.execSQL("CREATE TABLE " + TABLE_META + " (key TEXT PRIMARY KEY, value TEXT)");
+        createGeoTable(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        hasRTree = tableExists(db, TABLE_GEO);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The mirror can always be rebuilt from Firestore
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STALLS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GEO);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_META);
+        onCreate(db);
+    }
+
+    private void createGeoTable(SQLiteDatabase db) {
+        try {
+            // Row IDs match the stalls table, each stall is a zero-size box
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_GEO
+                    + " USING rtree(id, min_lat, max_lat, min_lng, max_lng)");
+        } catch (SQLiteException e) {
+            db.execSQL("CREATE INDEX stalls_lat_lng ON " + TABLE_STALLS + " (latitude, longitude)");
+        }
+    }
+
+    private static boolean tableExists(SQLiteDatabase db, String table) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE name = ?", new String[]{table})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Checks if the mirror has been filled from a complete catalog at least once
+     * @return True if queries see the whole catalog
+     */
+    public boolean isPopulated() {
+        return populated;
+    }
+
+    /**
+     * Replaces the whole mirror with the given stalls
+     * @param stalls Every stall in the catalog
+     */
+    public void replaceAll(Collection<Stall> stalls) {
+        List<Stall> copy = new ArrayList<>(stalls);
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_STALLS, null, null);
+                db.delete(TABLE_FTS, null, null);
+                if (hasRTree) {
+                    db.delete(TABLE_GEO, null, null);
+                }
+                for (Stall stall : copy) {
+                    write(db, stall);
+                }
+                ContentValues meta = new ContentValues();
+                meta.put("key", META_POPULATED);
+                meta.put("value", "1");
+                db.insertWithOnConflict(TABLE_META, null, meta, SQLiteDatabase.CONFLICT_REPLACE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            populated = true;
+        });
+    }
+
+    /**
+     * Adds or replaces stalls
+     * @param stalls Stalls that were added or changed
+     */
+    public void upsert(Collection<Stall> stalls) {
+        if (stalls.isEmpty()) return;
+        List<Stall> copy = new ArrayList<>(stalls);
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Stall stall : copy) {
+                    write(db, stall);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Removes stalls
+     * @param stallIds IDs of the stalls that were deleted
+     */
+    public void remove(Collection<String> stallIds) {
+        if (stallIds.isEmpty()) return;
+        List<String> copy = new ArrayList<>(stallIds);
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String stallId : copy) {
+                    long rowId = findRowId(db, stallId);
+                    if (rowId < 0) continue;
+                    deleteIndexes(db, rowId);
+                    db.delete(TABLE_STALLS, "rowid = ?", new String[]{String.valueOf(rowId)});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Sets the dish tags searched along with a stall
+     * @param stallId ID of the stall
+     * @param tags Tags of the stall's dishes
+     */
+    public void setTags(String stallId, List<String> tags) {
+        String joined = TextUtils.join(" ", tags);
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            long rowId = findRowId(db, stallId);
+            if (rowId < 0) return;
+            ContentValues values = new ContentValues();
+            values.put("tags", joined);
+            db.update(TABLE_FTS, values, "docid = ?", new String[]{String.valueOf(rowId)});
+        });
+    }
+
+    /**
+     * Searches name, dish type, area and tags, every query word matched as a prefix.
+     * The filter runs in the same query, so the limit counts only matching stalls.
+     * @param query Search query
+     * @param filter Dish type, area and minimum rating to match
+     * @param limit Maximum number of results
+     * @return Task containing the matching stalls, highest rated first
+     */
+    public Task<List<Stall>> search(String query, StallPage.Filter filter, int limit) {
+        List<String> tokens = StallSearchIndex.tokenize(query);
+        return Tasks.call(executor, () -> {
+            if (tokens.isEmpty()) {
+                return new ArrayList<>();
+            }
+            StringBuilder match = new StringBuilder();
+            for (String token : tokens) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                // Tokens are letters and digits only, so they are safe to quote
+                match.append('"').append(token).append("\"*");
+            }
+            List<String> args = new ArrayList<>();
+            args.add(match.toString());
+            StringBuilder sql = new StringBuilder("SELECT " + columns("s") + " FROM " + TABLE_STALLS + " s JOIN "
+                    + TABLE_FTS + " f ON s.rowid = f.docid WHERE " + TABLE_FTS + " MATCH ?");
+            // Categories compare like CategoryDictionary, ignoring case and outer spaces
+            if (!filter.dishType.isEmpty()) {
+                sql.append(" AND LOWER(TRIM(s.dish_type)) = ?");
+                args.add(CategoryDictionary.normalize(filter.dishType));
+            }
+            if (!filter.area.isEmpty()) {
+                sql.append(" AND LOWER(TRIM(s.area)) = ?");
+                args.add(CategoryDictionary.normalize(filter.area));
+            }
+            if (filter.minRating > 0) {
+                sql.append(" AND s.rating >= ?");
+                args.add(String.valueOf(filter.minRating));
+            }
+            sql.append(" ORDER BY s.rating DESC LIMIT ?");
+            args.add(String.valueOf(limit));
+            return readStalls(getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0])));
+        });
+    }
+
+    /**
+     * Gets the stalls inside a bounding box
+     * @param south Southern latitude of the box
+     * @param west Western longitude of the box
+     * @param north Northern latitude of the box
+     * @param east Eastern longitude of the box
+     * @return Task containing the stalls inside the box
+     */
+    public Task<List<Stall>> getStallsInBounds(double south, double west, double north, double east) {
+        return Tasks.call(executor, () -> {
+            List<Stall> stalls = new ArrayList<>();
+            if (west <= east) {
+                stalls.addAll(queryBox(south, west, north, east));
+            } else {
+                // The box crosses the antimeridian
+                stalls.addAll(queryBox(south, west, north, 180));
+                stalls.addAll(queryBox(south, -180, north, east));
+            }
+            return stalls;
+        });
+    }
+
+    private List<Stall> queryBox(double south, double west, double north, double east) {
+        String[] args = {String.valueOf(south), String.valueOf(north), String.valueOf(west), String.valueOf(east)};
+        String sql;
+        if (hasRTree) {
+            sql = "SELECT " + columns("s") + " FROM " + TABLE_STALLS + " s JOIN " + TABLE_GEO
+                    + " g ON s.rowid = g.id WHERE g.min_lat >= ? AND g.max_lat <= ?"
+                    + " AND g.min_lng >= ? AND g.max_lng <= ?";
+        } else {
+            sql = "SELECT " + columns("s") + " FROM " + TABLE_STALLS + " s"
+                    + " WHERE s.latitude BETWEEN ? AND ? AND s.longitude BETWEEN ? AND ?";
+        }
+        return readStalls(getReadableDatabase().rawQuery(sql, args));
+    }
+
+    /**
+     * Writes one stall to the table and both indexes, keeping its row ID
+     */
+    private void write(SQLiteDatabase db, Stall stall) {
+        ContentValues values = toValues(stall);
+        long rowId = findRowId(db, stall.getStallId());
+        if (rowId >= 0) {
+            db.update(TABLE_STALLS, values, "rowid = ?", new String[]{String.valueOf(rowId)});
+        } else {
+            rowId = db.insert(TABLE_STALLS, null, values);
+            if (rowId < 0) return;
+        }
+
+        // Tags are set separately, keep any already there
+        String tags = null;
+        try (Cursor cursor = db.rawQuery("SELECT tags FROM " + TABLE_FTS + " WHERE docid = ?",
+                new String[]{String.valueOf(rowId)})) {
+            if (cursor.moveToFirst()) {
+                tags = cursor.getString(0);
+            }
+        }
+        deleteIndexes(db, rowId);
+
+        ContentValues text = new ContentValues();
+        text.put("docid", rowId);
+        text.put("name", stall.getName());
+        text.put("dish_type", stall.getDishType());
+        text.put("area", stall.getArea());
+        text.put("tags", tags);
+        db.insert(TABLE_FTS, null, text);
+
+        GeoPoint location = stall.getLocation();
+        if (hasRTree && location != null) {
+            ContentValues box = new ContentValues();
+            box.put("id", rowId);
+            box.put("min_lat", location.getLatitude());
+            box.put("max_lat", location.getLatitude());
+            box.put("min_lng", location.getLongitude());
+            box.put("max_lng", location.getLongitude());
+            db.insert(TABLE_GEO, null, box);
+        }
+    }
+
+    private void deleteIndexes(SQLiteDatabase db, long rowId) {
+        String[] args = {String.valueOf(rowId)};
+        db.delete(TABLE_FTS, "docid = ?", args);
+        if (hasRTree) {
+            db.delete(TABLE_GEO, "id = ?", args);
+        }
+    }
+
+    private static long findRowId(SQLiteDatabase db, String stallId) {
+        try (Cursor cursor = db.rawQuery("SELECT rowid FROM " + TABLE_STALLS + " WHERE stall_id = ?",
+                new String[]{stallId})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private boolean readPopulated() {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT value FROM " + TABLE_META + " WHERE key = ?", new String[]{META_POPULATED})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static String columns(String alias) {
+        StringBuilder builder = new StringBuilder();
+        for (String column : STALL_COLUMNS) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(alias).append('.').append(column);
+        }
+        return builder.toString();
+    }
+
+    private static ContentValues toValues(Stall stall) {
+        ContentValues values = new ContentValues();
+        values.put("stall_id", stall.getStallId());
+        values.put("name", stall.getName());
+        values.put("dish_type", stall.getDishType());
+        values.put("area", stall.getArea());
+        if (stall.getLocation() != null) {
+            values.put("latitude", stall.getLocation().getLatitude());
+            values.put("longitude", stall.getLocation().getLongitude());
+        } else {
+            values.putNull("latitude");
+            values.putNull("longitude");
+        }
+        values.put("geohash", stall.getGeohash());
+        values.put("images", stall.getImages() != null ? TextUtils.join("\n", stall.getImages()) : null);
+        values.put("rating", stall.getRating());
+        values.put("num_ratings", stall.getNumRatings());
+        values.put("rating_sum", stall.getRatingSum());
+        values.put("created_by", stall.getCreatedBy());
+        values.put("description", stall.getDescription());
+        values.put("opening_hours", stall.getOpeningHours());
+        values.put("phone", stall.getPhone());
+        values.put("user_id", stall.getUserId());
+        values.put("owner_name", stall.getOwnerName());
+        values.put("created_at", stall.getCreatedAt() != null ? stall.getCreatedAt().getTime() : null);
+        values.put("updated_at", stall.getUpdatedAt() != null ? stall.getUpdatedAt().getTime() : null);
+        return values;
+    }
+
+    private static List<Stall> readStalls(Cursor cursor) {
+        List<Stall> stalls = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                stalls.add(readStall(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return stalls;
+    }
+
+    /**
+     * Builds a stall from a row selected with STALL_COLUMNS, in that order
+     */
+    private static Stall readStall(Cursor cursor) {
+        Stall stall = new Stall();
+        stall.setStallId(cursor.getString(0));
+        stall.setName(cursor.getString(1));
+        stall.setDishType(cursor.getString(2));
+        stall.setArea(cursor.getString(3));
+        if (!cursor.isNull(4) && !cursor.isNull(5)) {
+            stall.setLocation(new GeoPoint(cursor.getDouble(4), cursor.getDouble(5)));
+        }
+        stall.setGeohash(cursor.getString(6));
+        String images = cursor.getString(7);
+        stall.setImages(TextUtils.isEmpty(images) ? new ArrayList<>() : new ArrayList<>(Arrays.asList(images.split("\n"))));
+        stall.setRating(cursor.getFloat(8));
+        stall.setNumRatings(cursor.getInt(9));
+        stall.setRatingSum(cursor.isNull(10) ? null : cursor.getDouble(10));
+        stall.setCreatedBy(cursor.getString(11));
+        stall.setDescription(cursor.getString(12));
+        stall.setOpeningHours(cursor.getString(13));
+        stall.setPhone(cursor.getString(14));
+        stall.setUserId(cursor.getString(15));
+        stall.setOwnerName(cursor.getString(16));
+        stall.setCreatedAt(cursor.isNull(17) ? null : new Date(cursor.getLong(17)));
+        stall.setUpdatedAt(cursor.isNull(18) ? null : new Date(cursor.getLong(18)));
+        return stall;
+    }
+}
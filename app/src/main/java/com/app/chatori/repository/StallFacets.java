@@ -0,0 +1,189 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.CategoryDictionary;
+import com.app.chatori.model.Stall;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Facet counts for the search filters: how many stalls each dish type, area
+ * and minimum rating would leave given the other filters.
+ * Stalls are counted once into cells of (dish type, area) holding a count per
+ * half-star rating bucket. Changing a filter only re-adds those cells, which
+ * number at most the distinct dish type and area pairs, and adding or
+ * removing a stall updates a single cell.
+ * Rating thresholds are exact on half stars, which all rating filters use.
+ */
+public class StallFacets {
+
+    // Half-star buckets from 0 to 5 stars
+    private static final int BUCKETS = 11;
+
+    // Cell key of dish type and area IDs to the stall count per rating bucket
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    /**
+     * Creates empty facets
+     */
+    public StallFacets() {
+    }
+
+    /**
+     * Replaces all counts
+     * @param stalls Stalls to count
+     */
+    public synchronized void rebuild(Collection<Stall> stalls) {
+        cells.clear();
+        for (Stall stall : stalls) {
+            add(stall);
+        }
+    }
+
+    /**
+     * Counts one stall
+     * @param stall Stall to add
+     */
+    public synchronized void add(Stall stall) {
+        long key = cellKey(stall);
+        int[] buckets = cells.get(key);
+        if (buckets == null) {
+            buckets = new int[BUCKETS];
+            cells.put(key, buckets);
+        }
+        buckets[bucketOf(stall.getRating())]++;
+    }
+
+    /**
+     * Stops counting a stall, as it was when it was added
+     * @param stall Stall to remove
+     */
+    public synchronized void remove(Stall stall) {
+        long key = cellKey(stall);
+        int[] buckets = cells.get(key);
+        if (buckets == null) return;
+
+        int bucket = bucketOf(stall.getRating());
+        if (buckets[bucket] > 0) {
+            buckets[bucket]--;
+        }
+        if (isEmpty(buckets)) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * Counts the stalls each filter value would leave.
+     * Every facet is counted with the other two filters applied but not its own,
+     * so each chip shows the results of picking it instead of the current value.
+     * @param dishTypeId CategoryDictionary ID of the selected dish type, or StallColumns.ANY
+     * @param areaId CategoryDictionary ID of the selected area, or StallColumns.ANY
+     * @param minRating Selected minimum rating
+     * @return Counts per dish type, area and rating threshold
+     */
+    public synchronized Counts count(int dishTypeId, int areaId, float minRating) {
+        int minBucket = bucketOf(minRating);
+        int[] dishTypes = new int[CategoryDictionary.DISH_TYPES.size()];
+        int[] areas = new int[CategoryDictionary.AREAS.size()];
+        int[] ratingBuckets = new int[BUCKETS];
+        int total = 0;
+
+        for (Map.Entry<Long, int[]> cell : cells.entrySet()) {
+            int cellDishType = (int) (cell.getKey() >> 32);
+            int cellArea = (int) (long) cell.getKey();
+            int[] buckets = cell.getValue();
+            boolean dishTypeMatches = dishTypeId == StallColumns.ANY || cellDishType == dishTypeId;
+            boolean areaMatches = areaId == StallColumns.ANY || cellArea == areaId;
+
+            int atLeastMin = 0;
+            for (int bucket = minBucket; bucket < BUCKETS; bucket++) {
+                atLeastMin += buckets[bucket];
+            }
+
+            if (areaMatches && cellDishType >= 0 && cellDishType < dishTypes.length) {
+                dishTypes[cellDishType] += atLeastMin;
+            }
+            if (dishTypeMatches && cellArea >= 0 && cellArea < areas.length) {
+                areas[cellArea] += atLeastMin;
+            }
+            if (dishTypeMatches && areaMatches) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    ratingBuckets[bucket] += buckets[bucket];
+                }
+                total += atLeastMin;
+            }
+        }
+        return new Counts(dishTypes, areas, ratingBuckets, total);
+    }
+
+    private static long cellKey(Stall stall) {
+        int dishTypeId = CategoryDictionary.DISH_TYPES.intern(stall.getDishType());
+        int areaId = CategoryDictionary.AREAS.intern(stall.getArea());
+        return ((long) dishTypeId << 32) | (areaId & 0xffffffffL);
+    }
+
+    private static int bucketOf(float rating) {
+        int bucket = (int) Math.floor(rating * 2);
+        return Math.max(0, Math.min(BUCKETS - 1, bucket));
+    }
+
+    private static boolean isEmpty(int[] buckets) {
+        for (int count : buckets) {
+            if (count > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Result counts for one combination of filters
+     */
+    public static class Counts {
+        private final int[] dishTypes;
+        private final int[] areas;
+        private final int[] ratingBuckets;
+        private final int total;
+
+        Counts(int[] dishTypes, int[] areas, int[] ratingBuckets, int total) {
+            this.dishTypes = dishTypes;
+            this.areas = areas;
+            this.ratingBuckets = ratingBuckets;
+            this.total = total;
+        }
+
+        /**
+         * @param dishTypeId CategoryDictionary ID of a dish type
+         * @return Stalls of that dish type matching the area and rating filters
+         */
+        public int getDishTypeCount(int dishTypeId) {
+            return dishTypeId >= 0 && dishTypeId < dishTypes.length ? dishTypes[dishTypeId] : 0;
+        }
+
+        /**
+         * @param areaId CategoryDictionary ID of an area
+         * @return Stalls in that area matching the dish type and rating filters
+         */
+        public int getAreaCount(int areaId) {
+            return areaId >= 0 && areaId < areas.length ? areas[areaId] : 0;
+        }
+
+        /**
+         * @param minRating Minimum rating
+         * @return Stalls rated at least that high matching the dish type and area filters
+         */
+        public int getRatingCount(float minRating) {
+            int count = 0;
+            for (int bucket = bucketOf(minRating); bucket < BUCKETS; bucket++) {
+                count += ratingBuckets[bucket];
+            }
+            return count;
+        }
+
+        /**
+         * @return Stalls matching all three filters
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+}
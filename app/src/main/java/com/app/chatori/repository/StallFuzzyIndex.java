@@ -0,0 +1,667 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.Stall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Typo-tolerant, ranked search over stall name, dish type, area and dish tags.
+ * Words are indexed by their trigrams. A query word collects candidate words
+ * that share enough trigrams, verifies them with a bounded edit distance, and
+ * is expanded through a synonym table so Hinglish spellings such as
+ * "golgappe", "gol gappe" and "panipuri" find the same stalls.
+ */
+public class StallFuzzyIndex {
+    // Default time budget for one search
+    public static final long DEFAULT_BUDGET_NANOS = 5_000_000L;
+    public static final int DEFAULT_LIMIT = 100;
+
+    private static final float WEIGHT_NAME = 3f;
+    private static final float WEIGHT_DISH_TYPE = 2f;
+    private static final float WEIGHT_TAG = 2f;
+    private static final float WEIGHT_AREA = 1f;
+
+    private static final float PREFIX_FACTOR = 0.9f;
+    private static final float EDIT_PENALTY = 0.15f;
+    private static final float SYNONYM_FACTOR = 0.9f;
+
+    // Spellings that refer to the same dish, all lowercase without spaces
+    private static final String[][] SYNONYMS = {
+            {"golgappe", "golgappa", "gupchup", "panipuri", "paanipuri", "puchka", "phuchka", "pakodi"},
+            {"momos", "momo", "dumpling", "dimsum"},
+            {"tikki", "alootikki", "tikkichaat"},
+            {"rolls", "roll", "kathiroll", "kaathiroll", "frankie", "wrap"},
+            {"biryani", "biriyani", "biriani", "pulao"},
+            {"chinese", "indochinese", "chowmein", "noodles", "manchurian"},
+            {"chaat", "chat", "papdichaat", "bhelpuri", "bhel"},
+            {"chole", "chhole", "cholebhature", "cholekulche"},
+            {"dahipuri", "dahibatata", "dahibhalla", "dahibhalle"},
+            {"vadapav", "wadapav", "vadapao"},
+            {"pavbhaji", "paobhaji"},
+            {"jalebi", "jilebi", "jilapi"},
+            {"samosa", "samose", "singara"},
+    };
+    private static final Map<String, String[]> SYNONYM_GROUPS = new HashMap<>();
+
+    static {
+        for (String[] group : SYNONYMS) {
+            for (String spelling : group) {
+                SYNONYM_GROUPS.put(spelling, group);
+            }
+        }
+    }
+
+    // Term dictionary; term IDs index the parallel lists below
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    // Term ID to the stall ordinals containing the term and the weight of the best field
+    private final List<Postings> termPostings = new ArrayList<>();
+    // Trigram to the IDs of the terms that contain it
+    private final Map<String, IntList> trigramPostings = new HashMap<>();
+
+    // Stalls are scored through dense ordinals so a query works on primitive arrays.
+    // An updated stall gets a new ordinal and its old postings are skipped until the next rebuild.
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Stall> stallsByOrdinal = new ArrayList<>();
+    private final Map<String, List<String>> stallTags = new HashMap<>();
+
+    // Scratch arrays reused across queries, always left zeroed
+    private int[] trigramCounts = new int[0];
+    private float[] wordScores = new float[0];
+    private float[] totalScores = new float[0];
+    private int[] matchCounts = new int[0];
+
+    /**
+     * Replaces the whole index with the given stalls, keeping known dish tags
+     * @param allStalls Stalls to index
+     */
+    public synchronized void rebuild(Collection<Stall> allStalls) {
+        termIds.clear();
+        terms.clear();
+        termPostings.clear();
+        trigramPostings.clear();
+        ordinals.clear();
+        stallsByOrdinal.clear();
+        for (Stall stall : allStalls) {
+            add(stall);
+        }
+    }
+
+    /**
+     * Adds a stall, or re-indexes it if it is already present
+     * @param stall Stall to index
+     */
+    public synchronized void update(Stall stall) {
+        if (stall == null || stall.getStallId() == null) return;
+        remove(stall.getStallId());
+        add(stall);
+
+        // Compact once stale postings outnumber live stalls
+        if (stallsByOrdinal.size() > 2 * ordinals.size() + 64) {
+            List<Stall> live = new ArrayList<>(ordinals.size());
+            for (int ordinal : ordinals.values()) {
+                live.add(stallsByOrdinal.get(ordinal));
+            }
+            rebuild(live);
+        }
+    }
+
+    /**
+     * Removes a stall from the index
+     * @param stallId ID of the stall to remove
+     */
+    public synchronized void remove(String stallId) {
+        Integer ordinal = ordinals.remove(stallId);
+        if (ordinal != null) {
+            stallsByOrdinal.set(ordinal, null);
+        }
+    }
+
+    /**
+     * Sets the dish tags of a stall so they can be searched too
+     * @param stallId ID of the stall
+     * @param tags Tags of the stall's dishes
+     */
+    public synchronized void setTags(String stallId, List<String> tags) {
+        stallTags.put(stallId, tags);
+        Integer ordinal = ordinals.get(stallId);
+        if (ordinal != null) {
+            update(stallsByOrdinal.get(ordinal));
+        }
+    }
+
+    /**
+     * Searches with the default result limit and time budget
+     * @param query Search query
+     * @return Matching stalls, best match first
+     */
+    public List<Stall> search(String query) {
+        return search(query, DEFAULT_LIMIT, DEFAULT_BUDGET_NANOS);
+    }
+
+    /**
+     * Finds stalls whose words match every query word, allowing typos and synonyms.
+     * Candidate verification stops once the time budget is spent and the best
+     * matches found so far are returned.
+     * @param query Search query
+     * @param limit Maximum number of results
+     * @param budgetNanos Time budget in nanoseconds
+     * @return Matching stalls, best match first
+     */
+    public synchronized List<Stall> search(String query, int limit, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        List<String> words = StallSearchIndex.tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        ensureScratchCapacity();
+
+        // Every word has to match, scores add up
+        IntList candidates = new IntList();
+        for (int w = 0; w < words.size(); w++) {
+            IntList touched = scoreWord(words.get(w), deadline);
+            for (int i = 0; i < touched.size; i++) {
+                int ordinal = touched.values[i];
+                if (matchCounts[ordinal] == w) {
+                    if (w == 0) {
+                        candidates.add(ordinal);
+                    }
+                    totalScores[ordinal] += wordScores[ordinal];
+                    matchCounts[ordinal]++;
+                }
+                wordScores[ordinal] = 0;
+            }
+        }
+
+        // "gol gappe" should also match "golgappe"
+        if (words.size() > 1) {
+            StringBuilder compound = new StringBuilder();
+            for (String word : words) {
+                compound.append(word);
+            }
+            IntList touched = scoreWord(compound.toString(), deadline);
+            for (int i = 0; i < touched.size; i++) {
+                int ordinal = touched.values[i];
+                float score = wordScores[ordinal] * words.size();
+                wordScores[ordinal] = 0;
+                if (matchCounts[ordinal] == 0) {
+                    candidates.add(ordinal);
+                }
+                if (matchCounts[ordinal] < words.size() || totalScores[ordinal] < score) {
+                    totalScores[ordinal] = score;
+                    matchCounts[ordinal] = words.size();
+                }
+            }
+        }
+
+        // Keep the best matches in a bounded min-heap, higher rating wins ties
+        Comparator<Integer> byScore = (o1, o2) -> {
+            int compare = Float.compare(totalScores[o1], totalScores[o2]);
+            if (compare != 0) return compare;
+            return Float.compare(stallsByOrdinal.get(o1).getRating(), stallsByOrdinal.get(o2).getRating());
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, byScore);
+        for (int i = 0; i < candidates.size; i++) {
+            int ordinal = candidates.values[i];
+            if (matchCounts[ordinal] == words.size()) {
+                best.add(ordinal);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        Stall[] results = new Stall[best.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = stallsByOrdinal.get(best.poll());
+        }
+        for (int i = 0; i < candidates.size; i++) {
+            totalScores[candidates.values[i]] = 0;
+            matchCounts[candidates.values[i]] = 0;
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Checks whether a query only extends an earlier one, so that its matches
+     * can be found among the earlier matches with searchWithin. Both queries
+     * must have the same words except for the last one, which may only grow.
+     * The grown word, and for several words the words joined up, must not
+     * allow more typos than before, since a larger typo allowance could reach
+     * stalls the earlier query did not. A new word is not an extension, as the
+     * joined-up words could then match a synonym the earlier query did not.
+     * @param previousQuery The earlier query
+     * @param query The new query
+     * @return True if searchWithin over the earlier matches finds the new matches
+     */
+    public static boolean extendsQuery(String previousQuery, String query) {
+        List<String> previous = StallSearchIndex.tokenize(previousQuery);
+        List<String> words = StallSearchIndex.tokenize(query);
+        if (previous.isEmpty() || words.size() != previous.size()) {
+            return false;
+        }
+
+        int last = previous.size() - 1;
+        for (int i = 0; i < last; i++) {
+            if (!previous.get(i).equals(words.get(i))) {
+                return false;
+            }
+        }
+        String lastWord = previous.get(last);
+        String word = words.get(last);
+        if (!word.startsWith(lastWord) || maxEdits(word.length()) != maxEdits(lastWord.length())) {
+            return false;
+        }
+
+        int grownBy = word.length() - lastWord.length();
+        int joinedLength = 0;
+        for (String previousWord : previous) {
+            joinedLength += previousWord.length();
+        }
+        return words.size() == 1 || maxEdits(joinedLength + grownBy) == maxEdits(joinedLength);
+    }
+
+    /**
+     * Ranks only the given stalls against a query, comparing the query words
+     * with each stall's own words instead of looking them up in the whole index.
+     * Used to narrow the matches of an earlier query the new one extends.
+     * @param candidates Stalls to check, such as the earlier results
+     * @param query Search query
+     * @param limit Maximum number of results
+     * @return Matching stalls, best match first
+     */
+    public synchronized List<Stall> searchWithin(Collection<Stall> candidates, String query, int limit) {
+        List<String> words = StallSearchIndex.tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<Map<String, Float>> wordVariants = new ArrayList<>(words.size());
+        StringBuilder compound = new StringBuilder();
+        for (String word : words) {
+            wordVariants.add(expandSynonyms(word));
+            compound.append(word);
+        }
+        Map<String, Float> compoundVariants = words.size() > 1 ? expandSynonyms(compound.toString()) : null;
+
+        List<Stall> matches = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        for (Stall candidate : candidates) {
+            // Score the indexed copy, which carries the latest fields and tags
+            Integer ordinal = ordinals.get(candidate.getStallId());
+            if (ordinal == null) continue;
+            Stall stall = stallsByOrdinal.get(ordinal);
+            Map<String, Float> stallTerms = termsOf(stall);
+
+            // Every word has to match, scores add up
+            float total = 0;
+            boolean matched = true;
+            for (Map<String, Float> variants : wordVariants) {
+                float score = bestScore(variants, stallTerms);
+                if (score == 0) {
+                    matched = false;
+                    break;
+                }
+                total += score;
+            }
+            if (compoundVariants != null) {
+                float score = bestScore(compoundVariants, stallTerms) * words.size();
+                if (score > 0 && (!matched || score > total)) {
+                    total = score;
+                    matched = true;
+                }
+            }
+
+            if (matched) {
+                matches.add(stall);
+                scores.add(total);
+            }
+        }
+
+        // Same order as search: higher score first, higher rating wins ties
+        Integer[] order = new Integer[matches.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (o1, o2) -> {
+            int compare = Float.compare(scores.get(o2), scores.get(o1));
+            if (compare != 0) return compare;
+            return Float.compare(matches.get(o2).getRating(), matches.get(o1).getRating());
+        });
+
+        List<Stall> results = new ArrayList<>(Math.min(limit, order.length));
+        for (int i = 0; i < order.length && i < limit; i++) {
+            results.add(matches.get(order[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Scores one query word's spellings against the words of a stall
+     * @return Best weighted similarity, 0 if no word matches
+     */
+    private static float bestScore(Map<String, Float> variants, Map<String, Float> stallTerms) {
+        float best = 0;
+        for (Map.Entry<String, Float> variant : variants.entrySet()) {
+            int maxEdits = maxEdits(variant.getKey().length());
+            for (Map.Entry<String, Float> term : stallTerms.entrySet()) {
+                float score = similarity(variant.getKey(), term.getKey(), maxEdits)
+                        * variant.getValue() * term.getValue();
+                if (score > best) {
+                    best = score;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scores stalls against one query word and its synonyms into wordScores
+     * @return Ordinals of the stalls that matched
+     */
+    private IntList scoreWord(String word, long deadline) {
+        IntList touched = new IntList();
+        for (Map.Entry<String, Float> variant : expandSynonyms(word).entrySet()) {
+            for (Map.Entry<Integer, Float> term : lookupTerms(variant.getKey(), deadline).entrySet()) {
+                float factor = term.getValue() * variant.getValue();
+                Postings postings = termPostings.get(term.getKey());
+                for (int i = 0; i < postings.size; i++) {
+                    int ordinal = postings.ordinals[i];
+                    if (stallsByOrdinal.get(ordinal) == null) continue;
+
+                    float score = postings.weights[i] * factor;
+                    if (wordScores[ordinal] == 0) {
+                        touched.add(ordinal);
+                    }
+                    if (score > wordScores[ordinal]) {
+                        wordScores[ordinal] = score;
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Expands a word with the spellings it is a known variant of
+     * @return Spelling to score factor, the word itself first
+     */
+    private Map<String, Float> expandSynonyms(String word) {
+        Map<String, Float> variants = new LinkedHashMap<>();
+        variants.put(word, 1f);
+
+        int maxEdits = maxEdits(word.length());
+        for (Map.Entry<String, String[]> entry : SYNONYM_GROUPS.entrySet()) {
+            String spelling = entry.getKey();
+            boolean matches = spelling.equals(word)
+                    || (word.length() >= 4 && spelling.startsWith(word))
+                    || (maxEdits > 0 && editDistance(word, spelling, maxEdits) <= maxEdits);
+            if (!matches) continue;
+
+            for (String synonym : entry.getValue()) {
+                if (!variants.containsKey(synonym)) {
+                    variants.put(synonym, SYNONYM_FACTOR);
+                }
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Finds indexed terms that equal, start with, or are within a few edits of a word
+     * @return Term ID to similarity between 0 and 1
+     */
+    private Map<Integer, Float> lookupTerms(String word, long deadline) {
+        Map<Integer, Float> matches = new HashMap<>();
+        int maxEdits = maxEdits(word.length());
+
+        List<String> grams = trigrams("$" + word);
+        if (grams.isEmpty()) {
+            // Single letters have no trigram, so match them as prefixes only
+            for (int termId = 0; termId < terms.size(); termId++) {
+                if (terms.get(termId).startsWith(word)) {
+                    matches.put(termId, terms.get(termId).equals(word) ? 1f : PREFIX_FACTOR);
+                }
+            }
+            return matches;
+        }
+
+        // Count shared trigrams for every term that has at least one
+        if (trigramCounts.length < terms.size()) {
+            trigramCounts = new int[Math.max(terms.size(), trigramCounts.length * 2)];
+        }
+        IntList touched = new IntList();
+        for (String gram : grams) {
+            IntList termList = trigramPostings.get(gram);
+            if (termList == null) continue;
+            for (int i = 0; i < termList.size; i++) {
+                int termId = termList.values[i];
+                if (trigramCounts[termId]++ == 0) {
+                    touched.add(termId);
+                }
+            }
+        }
+
+        // Each edit can destroy at most three trigrams
+        int minShared = Math.max(1, grams.size() - 3 * maxEdits);
+        for (int i = 0; i < touched.size; i++) {
+            int termId = touched.values[i];
+            int shared = trigramCounts[termId];
+            trigramCounts[termId] = 0;
+
+            if (shared < minShared || termPostings.get(termId).size == 0) continue;
+            // Keep resetting counts after the deadline, but stop verifying
+            if (System.nanoTime() > deadline && !matches.isEmpty()) continue;
+
+            float similarity = similarity(word, terms.get(termId), maxEdits);
+            if (similarity > 0) {
+                matches.put(termId, similarity);
+            }
+        }
+        return matches;
+    }
+
+    private static float similarity(String word, String term, int maxEdits) {
+        if (term.equals(word)) {
+            return 1f;
+        }
+        if (term.startsWith(word)) {
+            return PREFIX_FACTOR;
+        }
+        if (maxEdits == 0 || term.length() + maxEdits < word.length()) {
+            return 0;
+        }
+
+        int distance = editDistance(word, term, maxEdits);
+        if (distance <= maxEdits) {
+            return 1f - EDIT_PENALTY * distance;
+        }
+
+        // The user may still be typing, so compare with the start of the term
+        if (term.length() > word.length()) {
+            int prefixDistance = editDistance(word, term.substring(0, word.length()), maxEdits);
+            if (prefixDistance <= maxEdits) {
+                return (1f - EDIT_PENALTY * prefixDistance) * PREFIX_FACTOR;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Levenshtein distance that gives up once it exceeds a bound
+     * @return The distance, or maxEdits + 1 if it is larger than maxEdits
+     */
+    static int editDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    private static int maxEdits(int length) {
+        if (length <= 3) return 0;
+        if (length <= 6) return 1;
+        return 2;
+    }
+
+    private static List<String> trigrams(String text) {
+        if (text.length() < 3) {
+            return Collections.emptyList();
+        }
+        List<String> grams = new ArrayList<>(text.length() - 2);
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            String gram = text.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    private void add(Stall stall) {
+        if (stall == null || stall.getStallId() == null) return;
+
+        int ordinal = stallsByOrdinal.size();
+        stallsByOrdinal.add(stall);
+        ordinals.put(stall.getStallId(), ordinal);
+        for (Map.Entry<String, Float> entry : termsOf(stall).entrySet()) {
+            termPostings.get(termId(entry.getKey())).add(ordinal, entry.getValue());
+        }
+    }
+
+    /**
+     * Collects the searchable words of a stall and its dish tags
+     * @return Word to the weight of the best field it appears in
+     */
+    private Map<String, Float> termsOf(Stall stall) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, stall.getName(), WEIGHT_NAME, false);
+        addField(weights, stall.getDishType(), WEIGHT_DISH_TYPE, true);
+        addField(weights, stall.getArea(), WEIGHT_AREA, true);
+        List<String> tags = stallTags.get(stall.getStallId());
+        if (tags != null) {
+            for (String tag : tags) {
+                addField(weights, tag, WEIGHT_TAG, true);
+            }
+        }
+        return weights;
+    }
+
+    private void ensureScratchCapacity() {
+        int size = stallsByOrdinal.size();
+        if (wordScores.length < size) {
+            wordScores = new float[size];
+            totalScores = new float[size];
+            matchCounts = new int[size];
+        }
+    }
+
+    /**
+     * Adds the words of a field, and for dish and area fields also the whole
+     * field without spaces. Names are skipped because nobody types them joined
+     * up and every name would add a unique term to verify.
+     */
+    private static void addField(Map<String, Float> weights, String value, float weight, boolean joinWords) {
+        List<String> words = StallSearchIndex.tokenize(value);
+        List<String> fieldTerms = new ArrayList<>(words);
+        if (joinWords && words.size() > 1) {
+            StringBuilder compound = new StringBuilder();
+            for (String word : words) {
+                compound.append(word);
+            }
+            fieldTerms.add(compound.toString());
+        }
+
+        for (String term : fieldTerms) {
+            Float existing = weights.get(term);
+            if (existing == null || existing < weight) {
+                weights.put(term, weight);
+            }
+        }
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = terms.size();
+        termIds.put(term, newId);
+        terms.add(term);
+        termPostings.add(new Postings());
+        for (String gram : trigrams("$" + term + "$")) {
+            IntList termList = trigramPostings.get(gram);
+            if (termList == null) {
+                termList = new IntList();
+                trigramPostings.put(gram, termList);
+            }
+            termList.add(newId);
+        }
+        return newId;
+    }
+
+    /**
+     * Stall ordinals of one term with the field weight for each
+     */
+    private static class Postings {
+        int[] ordinals = new int[2];
+        float[] weights = new float[2];
+        int size;
+
+        void add(int ordinal, float weight) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            weights[size++] = weight;
+        }
+    }
+
+    /**
+     * Growable list of primitive ints
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
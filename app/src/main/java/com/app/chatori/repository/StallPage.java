@@ -0,0 +1,81 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.Stall;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a ranked stall feed, as returned by StallRepository.getStallsPage.
+ * Pass the page's cursor back in to get the page after it.
+ */
+public class StallPage {
+
+    /**
+     * Order of a stall feed
+     */
+    public enum Sort {
+        // Highest rated first
+        RATING,
+        // Most reviewed first
+        POPULAR,
+        // Alphabetical by name
+        NAME,
+        // Most recently added first
+        NEWEST
+    }
+
+    /**
+     * Filters applied to a stall feed. Empty strings and 0 mean no filter.
+     */
+    public static class Filter {
+        public static final Filter NONE = new Filter("", "", 0);
+
+        final String dishType;
+        final String area;
+        final float minRating;
+
+        /**
+         * @param dishType Dish type to match, empty for any
+         * @param area Area to match, empty for any
+         * @param minRating Minimum rating, 0 for any
+         */
+        public Filter(String dishType, String area, float minRating) {
+            this.dishType = dishType != null ? dishType : "";
+            this.area = area != null ? area : "";
+            this.minRating = minRating;
+        }
+    }
+
+    private final List<Stall> stalls;
+    private final DocumentSnapshot cursor;
+    private final boolean hasMore;
+
+    StallPage(List<Stall> stalls, DocumentSnapshot cursor, boolean hasMore) {
+        this.stalls = Collections.unmodifiableList(stalls);
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return Stalls in this page, in feed order
+     */
+    public List<Stall> getStalls() {
+        return stalls;
+    }
+
+    /**
+     * @return Cursor for the next page, or null if this page was empty
+     */
+    public DocumentSnapshot getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return True if there may be more stalls after this page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
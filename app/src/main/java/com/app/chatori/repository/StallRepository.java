@@ -1,33 +1,72 @@
 package com.app.chatori.repository;
 
+import android.util.LruCache;
+
 import androidx.lifecycle.MutableLiveData;
 
+import com.app.chatori.model.CategoryDictionary;
 import com.app.chatori.model.Stall;
+import com.app.chatori.model.StallCodec;
+import com.app.chatori.utils.GeoHashUtils;
+import com.app.chatori.utils.LocationUtils;
 import com.app.chatori.utils.StallDataHelper;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.GeoPoint;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Repository class for handling Stall data operations with Firestore.
  */
 public class StallRepository {
     private static final String COLLECTION_STALLS = "Stalls";
+    // One document per deleted stall, keyed by stall ID, so syncing clients can drop it
+    private static final String COLLECTION_STALL_TOMBSTONES = "StallTombstones";
+    private static final int STALL_CACHE_SIZE = 200;
+    private static final int TILE_CACHE_SIZE = 64;
+    private static final int MAX_VIEWPORT_TILES = 16;
+    // Maximum number of values Firestore accepts in one whereIn filter
+    private static final int WHERE_IN_LIMIT = 30;
+    // Largest radius the nearest stalls search widens to, fewer stalls are shown past it
+    private static final double MAX_NEAREST_RADIUS_KM = 160;
     
     private final FirebaseFirestore db;
     
+    // Shared in-memory catalog of all stalls
+    private final StallCatalog catalog;
+    
+    // Recently viewed or listed stalls, keyed by stall ID
+    private final LruCache<String, Stall> stallCache = new LruCache<>(STALL_CACHE_SIZE);
+    
+    // Stalls inside each loaded geohash tile, keyed by the tile's geohash
+    private final LruCache<String, List<Stall>> tileCache = new LruCache<>(TILE_CACHE_SIZE);
+    
     // Singleton instance
     private static StallRepository instance;
     
     private StallRepository() {
         db = FirebaseFirestore.getInstance();
+        catalog = new StallCatalog(db.collection(COLLECTION_STALLS),
+                db.collection(COLLECTION_STALL_TOMBSTONES));
+        catalog.addChangeListener(this::applyCatalogChanges);
     }
     
     public static synchronized StallRepository getInstance() {
@@ -52,17 +91,26 @@ public class StallRepository {
         if (stall.getLocation() == null) {
             stall.setLocation(new com.google.firebase.firestore.GeoPoint(0, 0));
         }
+        updateGeohash(stall);
         
         // Set creation date if not set
         if (stall.getCreatedAt() == null) {
             stall.setCreatedAt(new java.util.Date());
         }
+        // Let the server stamp the write
+        stall.setUpdatedAt(null);
+        // Start the rating sum that reviews increment
+        if (stall.getRatingSum() == null) {
+            stall.setRatingSum((double) stall.getRating() * stall.getNumRatings());
+        }
         
         return db.collection(COLLECTION_STALLS)
                 .document(stall.getStallId())
                 .set(stall)
                 .continueWithTask(task -> {
                     if (task.isSuccessful()) {
+                        catalog.upsert(stall);
+                        stallCache.put(stall.getStallId(), stall);
                         return Tasks.forResult(db.collection(COLLECTION_STALLS).document(stall.getStallId()));
                     } else {
                         return Tasks.forException(task.getException());
@@ -82,7 +130,150 @@ public class StallRepository {
     }
     
     /**
-     * Gets all stalls
+     * Gets a stall by its ID, serving it from memory when possible.
+     * Checks the LRU cache, then the shared catalog, then Firestore.
+     * @param stallId ID of the stall to retrieve
+     * @return Task containing the stall, or null if it does not exist
+     */
+    public Task<Stall> getStall(String stallId) {
+        Stall cached = stallCache.get(stallId);
+        if (cached == null) {
+            cached = catalog.getStall(stallId);
+        }
+        if (cached != null) {
+            stallCache.put(stallId, cached);
+            return Tasks.forResult(cached);
+        }
+        
+        return getStallById(stallId).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            DocumentSnapshot document = task.getResult();
+            if (document == null || !document.exists()) {
+                return null;
+            }
+            
+            Stall stall = StallCodec.decode(document);
+            if (stall != null) {
+                if (stall.getStallId() == null) {
+                    stall.setStallId(stallId);
+                }
+                stallCache.put(stallId, stall);
+            }
+            return stall;
+        });
+    }
+    
+    /**
+     * Gets several stalls by ID with as few reads as possible.
+     * Stalls in the LRU cache or the catalog are served locally, the rest are
+     * fetched in whereIn batches of up to 30 IDs.
+     * @param stallIds IDs of the stalls to retrieve
+     * @return Task containing the stalls that exist, in the order of stallIds
+     */
+    public Task<List<Stall>> getStallsByIds(Collection<String> stallIds) {
+        Map<String, Stall> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String stallId : new LinkedHashSet<>(stallIds)) {
+            Stall cached = stallCache.get(stallId);
+            if (cached == null) {
+                cached = catalog.getStall(stallId);
+            }
+            if (cached != null) {
+                found.put(stallId, cached);
+            } else {
+                missing.add(stallId);
+            }
+        }
+        
+        List<Task<QuerySnapshot>> batches = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += WHERE_IN_LIMIT) {
+            List<String> batch = new ArrayList<>(missing.subList(start, Math.min(start + WHERE_IN_LIMIT, missing.size())));
+            batches.add(db.collection(COLLECTION_STALLS)
+                    .whereIn(FieldPath.documentId(), batch)
+                    .get());
+        }
+        
+        return Tasks.whenAll(batches).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            SnapshotDecoder.Timing timing = SnapshotDecoder.start("stallsByIds");
+            int decoded = 0;
+            for (Task<QuerySnapshot> batch : batches) {
+                for (DocumentSnapshot document : batch.getResult()) {
+                    Stall stall = StallCodec.decode(document);
+                    if (stall != null) {
+                        if (stall.getStallId() == null) {
+                            stall.setStallId(document.getId());
+                        }
+                        found.put(document.getId(), stall);
+                    }
+                    decoded++;
+                }
+            }
+            timing.finish(decoded);
+            
+            // Keep the caller's order, skipping stalls that no longer exist
+            List<Stall> stalls = new ArrayList<>(found.size());
+            for (String stallId : stallIds) {
+                Stall stall = found.remove(stallId);
+                if (stall != null) {
+                    stallCache.put(stallId, stall);
+                    stalls.add(stall);
+                }
+            }
+            return Collections.unmodifiableList(stalls);
+        });
+    }
+    
+    /**
+     * Adds stalls loaded by a list screen to the lookup cache
+     * @param stalls Stalls to cache
+     */
+    public void cacheStalls(Collection<Stall> stalls) {
+        for (Stall stall : stalls) {
+            if (stall != null && stall.getStallId() != null) {
+                stallCache.put(stall.getStallId(), stall);
+            }
+        }
+    }
+    
+    /**
+     * Keeps the lookup and tile caches in step with changes seen by the catalog,
+     * so cached screens pick them up without reading the stalls again
+     * @param changes Stalls that changed
+     */
+    private void applyCatalogChanges(StallCatalog.ChangeSet changes) {
+        for (Stall stall : changes.getAdded()) {
+            addToTiles(stall);
+        }
+        for (Stall stall : changes.getModified()) {
+            if (stallCache.get(stall.getStallId()) != null) {
+                stallCache.put(stall.getStallId(), stall);
+            }
+            removeFromTiles(changes.getPrevious(stall.getStallId()));
+            addToTiles(stall);
+        }
+        for (Stall stall : changes.getRemoved()) {
+            stallCache.remove(stall.getStallId());
+            removeFromTiles(stall);
+        }
+    }
+    
+    /**
+     * Gets the shared stall catalog used by list, search and map screens
+     * @return The process-wide stall catalog
+     */
+    public StallCatalog getStallCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Gets all stalls. Reads the whole collection, prefer getStallsPage for lists.
      * @return Task containing all stalls
      */
     public Task<QuerySnapshot> getAllStalls() {
@@ -91,6 +282,107 @@ public class StallRepository {
                 .get();
     }
     
+    /**
+     * Gets one page of a filtered and sorted stall feed.
+     * Filters, order and limit run in Firestore, so a page costs pageSize reads
+     * however many stalls exist. A minimum rating can only be pushed down when
+     * sorting by rating, with other sorts it is applied to each page here and
+     * pages may come back shorter than pageSize.
+     * Stalls missing the sort field are left out of the feed.
+     * @param filter Filters to apply
+     * @param sort Order of the feed
+     * @param cursor Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of stalls to read
+     * @return Task containing the page
+     */
+    public Task<StallPage> getStallsPage(StallPage.Filter filter, StallPage.Sort sort,
+                                         DocumentSnapshot cursor, int pageSize) {
+        Query query = db.collection(COLLECTION_STALLS);
+        // Stored categories can differ in case or spacing, so match every spelling seen
+        List<String> dishTypes = filter.dishType.isEmpty()
+                ? Collections.emptyList() : spellings(CategoryDictionary.DISH_TYPES, filter.dishType);
+        List<String> areas = filter.area.isEmpty()
+                ? Collections.emptyList() : spellings(CategoryDictionary.AREAS, filter.area);
+        query = whereAnyOf(query, "dishType", dishTypes);
+        // Firestore caps the combinations of two whereIn filters, past that match the area here
+        final boolean filterAreaHere = dishTypes.size() * areas.size() > WHERE_IN_LIMIT;
+        if (!filterAreaHere) {
+            query = whereAnyOf(query, "area", areas);
+        }
+
+        boolean ratingInQuery = false;
+        switch (sort) {
+            case POPULAR:
+                query = query.orderBy("numRatings", Query.Direction.DESCENDING);
+                break;
+            case NAME:
+                query = query.orderBy("name", Query.Direction.ASCENDING);
+                break;
+            case NEWEST:
+                query = query.orderBy("createdAt", Query.Direction.DESCENDING);
+                break;
+            case RATING:
+            default:
+                if (filter.minRating > 0) {
+                    query = query.whereGreaterThanOrEqualTo("rating", filter.minRating);
+                }
+                query = query.orderBy("rating", Query.Direction.DESCENDING);
+                ratingInQuery = true;
+                break;
+        }
+
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+
+        final boolean filterRatingHere = !ratingInQuery && filter.minRating > 0;
+        return query.limit(pageSize).get().continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+
+            SnapshotDecoder.Timing timing = SnapshotDecoder.start("stallsPage");
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            List<Stall> stalls = new ArrayList<>(documents.size());
+            for (DocumentSnapshot document : documents) {
+                Stall stall = StallCodec.decode(document);
+                if (stall == null) continue;
+                if (stall.getStallId() == null) {
+                    stall.setStallId(document.getId());
+                }
+                if (filterRatingHere && stall.getRating() < filter.minRating) continue;
+                if (filterAreaHere && !CategoryDictionary.normalize(stall.getArea())
+                        .equals(CategoryDictionary.normalize(filter.area))) continue;
+                stalls.add(stall);
+            }
+            timing.finish(documents.size());
+            cacheStalls(stalls);
+
+            DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            return new StallPage(stalls, last, documents.size() >= pageSize);
+        });
+    }
+
+    /**
+     * Gets the spellings of a category value to query, at most WHERE_IN_LIMIT of them
+     */
+    private static List<String> spellings(CategoryDictionary dictionary, String value) {
+        List<String> spellings = dictionary.getSpellings(value);
+        return spellings.size() > WHERE_IN_LIMIT ? spellings.subList(0, WHERE_IN_LIMIT) : spellings;
+    }
+    
+    /**
+     * Adds a filter matching any of the values, or none when the list is empty
+     */
+    private static Query whereAnyOf(Query query, String field, List<String> values) {
+        if (values.isEmpty()) {
+            return query;
+        }
+        return values.size() == 1
+                ? query.whereEqualTo(field, values.get(0))
+                : query.whereIn(field, values);
+    }
+    
     /**
      * Gets stalls by dish type
      * @param dishType Type of dish to filter by
@@ -150,14 +442,73 @@ public class StallRepository {
     }
     
     /**
-     * Updates a stall
+     * Gets stalls created by a specific user, decoded off the main thread
+     * @param userId ID of the user who created the stalls
+     * @return Task containing the user's stalls
+     */
+    public Task<List<Stall>> getStallsCreatedBy(String userId) {
+        return getStallsByUser(userId).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            SnapshotDecoder.Timing timing = SnapshotDecoder.start("stallsByUser");
+            List<Stall> stalls = new ArrayList<>(task.getResult().size());
+            for (DocumentSnapshot document : task.getResult()) {
+                Stall stall = StallCodec.decode(document);
+                if (stall != null) {
+                    stalls.add(stall);
+                }
+            }
+            timing.finish(task.getResult().size());
+            
+            // Make these stalls available to the detail screen without another read
+            cacheStalls(stalls);
+            return Collections.unmodifiableList(stalls);
+        });
+    }
+    
+    /**
+     * Updates a stall's details. The rating fields are left as they are on the
+     * server, so reviews counted since the stall was loaded are kept.
      * @param stall Stall object with updated data
      * @return Task for the operation
      */
     public Task<Void> updateStall(Stall stall) {
+        updateGeohash(stall);
+        // Let the server stamp the write
+        stall.setUpdatedAt(null);
+        Map<String, Object> details = StallCodec.encodeDetails(stall);
+        details.put(StallCatalog.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
         return db.collection(COLLECTION_STALLS)
                 .document(stall.getStallId())
-                .set(stall);
+                .set(details, SetOptions.merge())
+                .addOnSuccessListener(aVoid -> {
+                    catalog.upsert(stall);
+                    stallCache.put(stall.getStallId(), stall);
+                });
+    }
+    
+    /**
+     * Deletes a stall and leaves a tombstone in the same batch, so clients
+     * syncing only recent changes also drop it
+     * @param stallId ID of the stall to delete
+     * @return Task for the operation
+     */
+    public Task<Void> deleteStall(String stallId) {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("stallId", stallId);
+        tombstone.put(StallCatalog.FIELD_DELETED_AT, FieldValue.serverTimestamp());
+        
+        Stall known = getKnownStall(stallId);
+        WriteBatch batch = db.batch();
+        batch.delete(db.collection(COLLECTION_STALLS).document(stallId));
+        batch.set(db.collection(COLLECTION_STALL_TOMBSTONES).document(stallId), tombstone);
+        return batch.commit().addOnSuccessListener(aVoid -> {
+            catalog.remove(stallId);
+            stallCache.remove(stallId);
+            removeFromTiles(known);
+        });
     }
     
     /**
@@ -167,66 +518,358 @@ public class StallRepository {
      * @return Task for the operation
      */
     public Task<Void> addStallImage(String stallId, String imageUrl) {
-        DocumentReference stallRef = db.collection(COLLECTION_STALLS).document(stallId);
-        return db.runTransaction(transaction -> {
-            DocumentSnapshot snapshot = transaction.get(stallRef);
-            Stall stall = snapshot.toObject(Stall.class);
-            if (stall != null) {
-                stall.addImage(imageUrl);
-                transaction.set(stallRef, stall);
-            }
-            return null;
-        });
+        return db.collection(COLLECTION_STALLS)
+                .document(stallId)
+                .update(StallCodec.IMAGES, FieldValue.arrayUnion(imageUrl),
+                        StallCatalog.FIELD_UPDATED_AT, FieldValue.serverTimestamp())
+                .addOnSuccessListener(aVoid -> stallCache.remove(stallId));
     }
     
     /**
-     * Updates a stall's rating when a new review is added
+     * Updates a stall's rating when a new review is added.
+     * A single write of server-side increments, so concurrent reviews never
+     * contend or retry the way a read-modify-write transaction would. The
+     * stored average is kept in step by the stallRatingAverage Cloud Function.
      * @param stallId ID of the stall
      * @param newRating New rating to incorporate
      * @return Task for the operation
      */
     public Task<Void> updateStallRating(String stallId, float newRating) {
         DocumentReference stallRef = db.collection(COLLECTION_STALLS).document(stallId);
+        return ratingUpdate(stallId, newRating).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return stallRef.update(task.getResult());
+        }).addOnSuccessListener(aVoid -> stallCache.remove(stallId));
+    }
+    
+    /**
+     * Builds the field updates that add one rating to a stall.
+     * Older stalls only store the average, so they are given a rating sum first.
+     * The totals are only ever incremented, never written from a local copy,
+     * so if that migration cannot reach the server the task fails.
+     * @param stallId ID of the stall
+     * @param newRating Rating to add
+     * @return Task containing the field updates for update(), a batch or a transaction
+     */
+    Task<Map<String, Object>> ratingUpdate(String stallId, float newRating) {
+        Stall known = getKnownStall(stallId);
+        if (known != null && known.getRatingSum() != null) {
+            return Tasks.forResult(ratingIncrement(newRating));
+        }
+        
+        return migrateRatingSum(getStallReference(stallId)).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return ratingIncrement(newRating);
+        });
+    }
+    
+    /**
+     * Builds the field updates that add one rating to a stall without reading it.
+     * The sum and count are incremented on the server, and the average is derived
+     * from them on read. The stored "rating" field, which orders queries, is
+     * derived from them on the server by the stallRatingAverage Cloud Function.
+     * @param newRating Rating to add
+     * @return Field updates for update() or a batch
+     */
+    private Map<String, Object> ratingIncrement(float newRating) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(StallCodec.RATING_SUM, FieldValue.increment(newRating));
+        updates.put(StallCodec.NUM_RATINGS, FieldValue.increment(1));
+        updates.put(StallCatalog.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return updates;
+    }
+    
+    /**
+     * Adds a ratingSum field to a stall written before ratings were summed.
+     * Runs as a transaction so a concurrent increment is never overwritten.
+     * @param stallRef Reference of the stall
+     * @return Task for the operation
+     */
+    Task<Void> migrateRatingSum(DocumentReference stallRef) {
         return db.runTransaction(transaction -> {
             DocumentSnapshot snapshot = transaction.get(stallRef);
-            Stall stall = snapshot.toObject(Stall.class);
-            if (stall != null) {
-                stall.updateRating(newRating);
-                transaction.set(stallRef, stall);
+            // Stalls saved from the bean carry an explicit null ratingSum
+            if (snapshot.exists() && snapshot.get(StallCodec.RATING_SUM) == null) {
+                Double rating = snapshot.getDouble(StallCodec.RATING);
+                Long numRatings = snapshot.getLong(StallCodec.NUM_RATINGS);
+                double sum = rating != null && numRatings != null ? rating * numRatings : 0;
+                transaction.update(stallRef, StallCodec.RATING_SUM, sum,
+                        StallCatalog.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
             }
             return null;
         });
     }
     
     /**
-     * Searches for stalls by name, dish type, or area
-     * @param query Search query
-     * @return LiveData containing the search results
+     * Gets the document reference of a stall
+     * @param stallId ID of the stall
+     * @return Reference to the stall document
      */
-    public MutableLiveData<List<Stall>> searchStalls(String query) {
-        MutableLiveData<List<Stall>> stallsLiveData = new MutableLiveData<>();
+    DocumentReference getStallReference(String stallId) {
+        return db.collection(COLLECTION_STALLS).document(stallId);
+    }
+    
+    /**
+     * Drops a stall from the LRU cache after a write changed it elsewhere
+     * @param stallId ID of the stall
+     */
+    void evictStall(String stallId) {
+        stallCache.remove(stallId);
+    }
+    
+    /**
+     * Gets a stall from the LRU cache or the catalog without reading Firestore
+     * @param stallId ID of the stall
+     * @return The stall, or null if it is not in memory
+     */
+    Stall getKnownStall(String stallId) {
+        Stall known = stallCache.get(stallId);
+        return known != null ? known : catalog.getStall(stallId);
+    }
+    
+    /**
+     * Gets stalls within a radius of a point using geohash range queries.
+     * Only the cells around the point are read, then exact distance is checked.
+     * Stalls saved before geohashes existed are found once the backfill script
+     * in functions/scripts has run.
+     * @param latitude Latitude of the center
+     * @param longitude Longitude of the center
+     * @param radiusKm Radius in kilometers
+     * @return Task containing the stalls within the radius
+     */
+    public Task<List<Stall>> getStallsNear(double latitude, double longitude, double radiusKm) {
+        return queryStallsNear(latitude, longitude, radiusKm);
+    }
+    
+    /**
+     * Gets the stalls around a point, doubling the radius until at least count
+     * stalls are found. Every stall within the final radius is returned, so the
+     * closest count of them are the closest overall. The radius stops growing at
+     * MAX_NEAREST_RADIUS_KM, so with few stalls around fewer than count are returned.
+     * @param latitude Latitude of the center
+     * @param longitude Longitude of the center
+     * @param radiusKm Radius to search first, in kilometers
+     * @param count Number of stalls wanted
+     * @return Task containing the stalls within the final radius
+     */
+    public Task<List<Stall>> getStallsAround(double latitude, double longitude, double radiusKm, int count) {
+        return getStallsNear(latitude, longitude, radiusKm).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            if (task.getResult().size() < count && radiusKm * 2 <= MAX_NEAREST_RADIUS_KM) {
+                return getStallsAround(latitude, longitude, radiusKm * 2, count);
+            }
+            return Tasks.forResult(task.getResult());
+        });
+    }
+    
+    /**
+     * Reads the stalls within a radius with one range query per covering geohash cell
+     */
+    private Task<List<Stall>> queryStallsNear(double latitude, double longitude, double radiusKm) {
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (String[] bound : GeoHashUtils.queryBounds(latitude, longitude, radiusKm)) {
+            queries.add(db.collection(COLLECTION_STALLS)
+                    .orderBy("geohash")
+                    .startAt(bound[0])
+                    .endAt(bound[1])
+                    .get());
+        }
         
-        // Normalize the query
-        String normalizedQuery = query.toLowerCase().trim();
+        return Tasks.whenAllSuccess(queries).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            SnapshotDecoder.Timing timing = SnapshotDecoder.start("stallsNear");
+            // Cells can overlap at the edges, so de-duplicate by ID
+            Map<String, Stall> nearby = new LinkedHashMap<>();
+            for (Object result : task.getResult()) {
+                for (DocumentSnapshot document : (QuerySnapshot) result) {
+                    if (nearby.containsKey(document.getId())) continue;
+                    
+                    Stall stall = StallCodec.decode(document);
+                    if (stall == null || stall.getLocation() == null) continue;
+                    if (stall.getStallId() == null) {
+                        stall.setStallId(document.getId());
+                    }
+                    
+                    double distance = LocationUtils.calculateDistance(latitude, longitude,
+                            stall.getLocation().getLatitude(), stall.getLocation().getLongitude());
+                    if (distance <= radiusKm) {
+                        nearby.put(document.getId(), stall);
+                    }
+                }
+            }
+            
+            timing.finish(nearby.size());
+            
+            List<Stall> stalls = new ArrayList<>(nearby.values());
+            cacheStalls(stalls);
+            return Collections.unmodifiableList(stalls);
+        });
+    }
+    
+    /**
+     * Searches the on-device mirror by name, dish type, area and dish tags.
+     * The filter is applied before the limit, so no matching stall is cut off
+     * by stalls the filter would drop.
+     * @param query Search query, each word matched as a prefix
+     * @param filter Dish type, area and minimum rating to match
+     * @param limit Maximum number of results
+     * @return Task containing the matching stalls highest rated first, from
+     *         the catalog if the mirror is not filled yet
+     */
+    public Task<List<Stall>> searchLocal(String query, StallPage.Filter filter, int limit) {
+        StallDatabase database = StallDatabase.getInstance();
+        if (database != null && database.isPopulated()) {
+            catalog.load();
+            return database.search(query, filter, limit);
+        }
+        return catalog.load().continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            StallColumns columns = new StallColumns(catalog.search(query));
+            int[] rows = columns.sortByRating(columns.filter(columns.allRows(),
+                    filter.dishType, filter.area, filter.minRating));
+            return columns.toStalls(Arrays.copyOf(rows, Math.min(limit, rows.length)));
+        });
+    }
+    
+    /**
+     * Gets stalls inside a bounding box, such as the visible part of the map.
+     * The box is split into geohash tiles and each tile is read once and cached,
+     * so panning back over loaded tiles costs no reads.
+     * @param south Southern latitude of the box
+     * @param west Western longitude of the box
+     * @param north Northern latitude of the box
+     * @param east Eastern longitude of the box
+     * @return Task containing the stalls inside the box
+     */
+    public Task<List<Stall>> getStallsInBounds(double south, double west, double north, double east) {
+        // Once mirrored, the R*Tree answers without any reads; loading the
+        // catalog keeps the mirror in step with the server
+        StallDatabase database = StallDatabase.getInstance();
+        if (database != null && database.isPopulated()) {
+            catalog.load();
+            return database.getStallsInBounds(south, west, north, east);
+        }
+        
+        return queryStallsInBounds(south, west, north, east);
+    }
+    
+    /**
+     * Reads the stalls inside a bounding box tile by tile
+     */
+    private Task<List<Stall>> queryStallsInBounds(double south, double west, double north, double east) {
+        List<String> tiles = GeoHashUtils.tilesForBounds(south, west, north, east, MAX_VIEWPORT_TILES);
         
-        // Search by name, dish type, and area
-        db.collection(COLLECTION_STALLS)
+        List<Task<List<Stall>>> tileTasks = new ArrayList<>(tiles.size());
+        for (String tile : tiles) {
+            tileTasks.add(getStallsInTile(tile));
+        }
+        
+        return Tasks.<List<Stall>>whenAllSuccess(tileTasks).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            
+            List<Stall> stalls = new ArrayList<>();
+            for (List<Stall> tileStalls : task.getResult()) {
+                for (Stall stall : tileStalls) {
+                    if (isInBounds(stall.getLocation(), south, west, north, east)) {
+                        stalls.add(stall);
+                    }
+                }
+            }
+            return Collections.unmodifiableList(stalls);
+        });
+    }
+    
+    /**
+     * Gets the stalls inside one geohash tile, from the tile cache when possible
+     * @param tile Geohash of the tile
+     * @return Task containing the stalls in the tile
+     */
+    private Task<List<Stall>> getStallsInTile(String tile) {
+        List<Stall> cached = tileCache.get(tile);
+        if (cached != null) {
+            return Tasks.forResult(cached);
+        }
+        
+        // A cached parent tile already holds every stall of this tile
+        for (int length = tile.length() - 1; length > 0; length--) {
+            List<Stall> parent = tileCache.get(tile.substring(0, length));
+            if (parent != null) {
+                List<Stall> stalls = new ArrayList<>();
+                for (Stall stall : parent) {
+                    if (stall.getGeohash() != null && stall.getGeohash().startsWith(tile)) {
+                        stalls.add(stall);
+                    }
+                }
+                return Tasks.forResult(stalls);
+            }
+        }
+        
+        return db.collection(COLLECTION_STALLS)
+                .orderBy("geohash")
+                .startAt(tile)
+                .endAt(tile + "~")
                 .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
+                .continueWith(SnapshotDecoder.EXECUTOR, task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    
+                    SnapshotDecoder.Timing timing = SnapshotDecoder.start("stallTile");
                     List<Stall> stalls = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        Stall stall = document.toObject(Stall.class);
-                        if (stall != null) {
-                            // Check if the stall matches the search query
-                            if (stall.getName().toLowerCase().contains(normalizedQuery) ||
-                                    stall.getDishType().toLowerCase().contains(normalizedQuery) ||
-                                    stall.getArea().toLowerCase().contains(normalizedQuery)) {
-                                stalls.add(stall);
+                    for (DocumentSnapshot document : task.getResult()) {
+                        Stall stall = StallCodec.decode(document);
+                        if (stall != null && stall.getLocation() != null) {
+                            if (stall.getStallId() == null) {
+                                stall.setStallId(document.getId());
                             }
+                            stalls.add(stall);
                         }
                     }
-                    stallsLiveData.setValue(stalls);
-                })
+                    
+                    timing.finish(task.getResult().size());
+                    
+                    cacheStalls(stalls);
+                    tileCache.put(tile, stalls);
+                    return stalls;
+                });
+    }
+    
+    private static boolean isInBounds(GeoPoint location, double south, double west, double north, double east) {
+        if (location == null) return false;
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        if (latitude < south || latitude > north) return false;
+        if (west <= east) {
+            return longitude >= west && longitude <= east;
+        }
+        // The box crosses the antimeridian
+        return longitude >= west || longitude <= east;
+    }
+    
+    /**
+     * Searches for stalls by name, dish type, or area
+     * @param query Search query
+     * @return LiveData containing the search results
+     */
+    public MutableLiveData<List<Stall>> searchStalls(String query) {
+        MutableLiveData<List<Stall>> stallsLiveData = new MutableLiveData<>();
+        
+        // Search the shared catalog's index instead of downloading the collection
+        catalog.load()
+                .addOnSuccessListener(stalls -> stallsLiveData.setValue(catalog.search(query)))
                 .addOnFailureListener(e -> stallsLiveData.setValue(new ArrayList<>()));
         
         return stallsLiveData;
@@ -241,6 +884,77 @@ public class StallRepository {
         return createStall(stall);
     }
     
+    /**
+     * Stores the geohash of a stall's location so it can be found by getStallsNear
+     * @param stall Stall to update
+     */
+    private void updateGeohash(Stall stall) {
+        // Drop cached tiles that held the stall's old position
+        evictTiles(stall.getGeohash());
+        
+        GeoPoint location = stall.getLocation();
+        if (location != null) {
+            stall.setGeohash(GeoHashUtils.encode(location.getLatitude(), location.getLongitude()));
+            evictTiles(stall.getGeohash());
+        }
+    }
+    
+    /**
+     * Adds a stall to every cached tile that contains it, replacing an older copy
+     * @param stall Stall to add
+     */
+    private void addToTiles(Stall stall) {
+        String geohash = stall.getGeohash();
+        if (geohash == null || stall.getLocation() == null) return;
+        for (int length = 1; length <= geohash.length(); length++) {
+            String tile = geohash.substring(0, length);
+            List<Stall> cached = tileCache.get(tile);
+            if (cached == null) continue;
+            
+            // Tile lists may be in use by callers, so replace rather than mutate
+            List<Stall> updated = withoutStall(cached, stall.getStallId());
+            updated.add(stall);
+            tileCache.put(tile, updated);
+        }
+    }
+    
+    /**
+     * Removes a stall from every cached tile that contains it
+     * @param stall Stall to remove, may be null
+     */
+    private void removeFromTiles(Stall stall) {
+        if (stall == null || stall.getGeohash() == null) return;
+        String geohash = stall.getGeohash();
+        for (int length = 1; length <= geohash.length(); length++) {
+            String tile = geohash.substring(0, length);
+            List<Stall> cached = tileCache.get(tile);
+            if (cached != null) {
+                tileCache.put(tile, withoutStall(cached, stall.getStallId()));
+            }
+        }
+    }
+    
+    private static List<Stall> withoutStall(List<Stall> stalls, String stallId) {
+        List<Stall> result = new ArrayList<>(stalls.size() + 1);
+        for (Stall stall : stalls) {
+            if (!stall.getStallId().equals(stallId)) {
+                result.add(stall);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Removes every cached tile that contains the given geohash
+     * @param geohash Geohash of a stall
+     */
+    private void evictTiles(String geohash) {
+        if (geohash == null) return;
+        for (int length = 1; length <= geohash.length(); length++) {
+            tileCache.remove(geohash.substring(0, length));
+        }
+    }
+    
     /**
      * Generates a unique stall ID
      * @return A unique stall ID
@@ -0,0 +1,192 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.Stall;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory inverted index over stall name, dish type and area.
+ * Every token is indexed under all of its prefixes, so search-as-you-type
+ * only touches the postings of the typed prefixes instead of every stall.
+ */
+public class StallSearchIndex {
+
+    // Token prefix to the IDs of stalls that have a token starting with it
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    // Stall ID to the prefixes it was indexed under, for incremental removal
+    private final Map<String, Set<String>> indexedPrefixes = new HashMap<>();
+    private final Map<String, Stall> stalls = new HashMap<>();
+
+    /**
+     * Replaces the whole index with the given stalls
+     * @param allStalls Stalls to index
+     */
+    public void rebuild(Collection<Stall> allStalls) {
+        postings.clear();
+        indexedPrefixes.clear();
+        stalls.clear();
+        for (Stall stall : allStalls) {
+            add(stall);
+        }
+    }
+
+    /**
+     * Adds a stall, or re-indexes it if it is already present
+     * @param stall Stall to index
+     */
+    public void update(Stall stall) {
+        if (stall == null || stall.getStallId() == null) return;
+        remove(stall.getStallId());
+        add(stall);
+    }
+
+    /**
+     * Removes a stall from the index
+     * @param stallId ID of the stall to remove
+     */
+    public void remove(String stallId) {
+        Set<String> prefixes = indexedPrefixes.remove(stallId);
+        stalls.remove(stallId);
+        if (prefixes == null) return;
+
+        for (String prefix : prefixes) {
+            Set<String> ids = postings.get(prefix);
+            if (ids != null) {
+                ids.remove(stallId);
+                if (ids.isEmpty()) {
+                    postings.remove(prefix);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds stalls where every query word is the start of a word in the
+     * stall's name, dish type or area
+     * @param query Search query
+     * @return Matching stalls in no particular order
+     */
+    public List<Stall> search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new ArrayList<>(stalls.values());
+        }
+
+        // Start from the smallest posting list and check it against the others
+        List<Set<String>> lists = new ArrayList<>(queryTokens.size());
+        Set<String> smallest = null;
+        for (String token : queryTokens) {
+            Set<String> ids = postings.get(token);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            lists.add(ids);
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+
+        List<Stall> results = new ArrayList<>(smallest.size());
+        for (String stallId : smallest) {
+            boolean inAll = true;
+            for (Set<String> ids : lists) {
+                if (ids != smallest && !ids.contains(stallId)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                results.add(stalls.get(stallId));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks a single stall the same way search does, without the index.
+     * Used to narrow an earlier result set when the query was only extended.
+     * @param stall Stall to check
+     * @param queryTokens Tokens of the query, from tokenize
+     * @return True if every query token starts a word of the stall
+     */
+    static boolean matches(Stall stall, List<String> queryTokens) {
+        List<String> stallTokens = new ArrayList<>();
+        for (String field : new String[]{stall.getName(), stall.getDishType(), stall.getArea()}) {
+            stallTokens.addAll(tokenize(field));
+        }
+
+        for (String queryToken : queryTokens) {
+            boolean found = false;
+            for (String stallToken : stallTokens) {
+                if (stallToken.startsWith(queryToken)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of indexed stalls
+     * @return Number of stalls
+     */
+    public int size() {
+        return stalls.size();
+    }
+
+    private void add(Stall stall) {
+        if (stall == null || stall.getStallId() == null) return;
+
+        Set<String> prefixes = new HashSet<>();
+        for (String field : new String[]{stall.getName(), stall.getDishType(), stall.getArea()}) {
+            for (String token : tokenize(field)) {
+                for (int length = 1; length <= token.length(); length++) {
+                    prefixes.add(token.substring(0, length));
+                }
+            }
+        }
+
+        for (String prefix : prefixes) {
+            Set<String> ids = postings.get(prefix);
+            if (ids == null) {
+                ids = new HashSet<>();
+                postings.put(prefix, ids);
+            }
+            ids.add(stall.getStallId());
+        }
+        indexedPrefixes.put(stall.getStallId(), prefixes);
+        stalls.put(stall.getStallId(), stall);
+    }
+
+    /**
+     * Splits text into lowercase words
+     * @param text Text to split
+     * @return Distinct words in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+}
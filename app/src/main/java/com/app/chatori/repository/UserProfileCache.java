@@ -0,0 +1,142 @@
+package com.app.chatori.repository;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.app.chatori.model.Review;
+import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cache of review author names and profile images.
+ * Reviews carry a copy of the author's name and image from when they were
+ * written. This cache resolves the current values for a whole page of reviews
+ * with batched whereIn reads, so a list costs one read per 30 new authors
+ * instead of one per review.
+ */
+public class UserProfileCache {
+    private static final String COLLECTION_USERS = "Users";
+    private static final int CACHE_SIZE = 500;
+    // Profiles older than this are fetched again
+    private static final long TTL_MS = 10 * 60 * 1000;
+    // Maximum number of values Firestore accepts in one whereIn filter
+    private static final int WHERE_IN_LIMIT = 30;
+
+    private final FirebaseFirestore db;
+
+    // User ID to the last fetched profile
+    private final LruCache<String, Profile> profiles = new LruCache<>(CACHE_SIZE);
+
+    // Singleton instance
+    private static UserProfileCache instance;
+
+    private UserProfileCache() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public static synchronized UserProfileCache getInstance() {
+        if (instance == null) {
+            instance = new UserProfileCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Fills in the current author name and profile image of each review.
+     * Authors missing from the cache or past the TTL are fetched in whereIn batches.
+     * Reviews whose author cannot be found keep the values they were written with.
+     * @param reviews Reviews to fill in, updated in place
+     * @return Task containing the same reviews once they are filled in
+     */
+    public Task<List<Review>> fillAuthors(List<Review> reviews) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (Review review : reviews) {
+            String userId = review.getUserId();
+            if (userId != null && getFresh(userId) == null) {
+                missing.add(userId);
+            }
+        }
+
+        List<String> userIds = new ArrayList<>(missing);
+        List<Task<QuerySnapshot>> batches = new ArrayList<>();
+        for (int start = 0; start < userIds.size(); start += WHERE_IN_LIMIT) {
+            List<String> batch = new ArrayList<>(userIds.subList(start, Math.min(start + WHERE_IN_LIMIT, userIds.size())));
+            batches.add(db.collection(COLLECTION_USERS)
+                    .whereIn(FieldPath.documentId(), batch)
+                    .get());
+        }
+
+        return Tasks.whenAllComplete(batches).continueWith(SnapshotDecoder.EXECUTOR, task -> {
+            for (Task<QuerySnapshot> batch : batches) {
+                // A failed batch just leaves those reviews with their stored values
+                if (!batch.isSuccessful()) continue;
+                for (DocumentSnapshot document : batch.getResult()) {
+                    User user = UserCodec.decode(document, UserCodec.PROFILE_FIELDS);
+                    if (user != null) {
+                        put(document.getId(), user);
+                    }
+                }
+            }
+
+            for (Review review : reviews) {
+                Profile profile = review.getUserId() != null ? profiles.get(review.getUserId()) : null;
+                if (profile != null) {
+                    review.setUserName(profile.name);
+                    review.setUserProfileImageUrl(profile.profileImageUrl);
+                }
+            }
+            return reviews;
+        });
+    }
+
+    /**
+     * Stores a user's profile, for example after the user edits it
+     * @param userId ID of the user
+     * @param user The user
+     */
+    public void put(String userId, User user) {
+        profiles.put(userId, new Profile(user.getName(), user.getProfileImageUrl(), SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Forgets a user's profile so the next lookup fetches it again
+     * @param userId ID of the user
+     */
+    public void invalidate(String userId) {
+        profiles.remove(userId);
+    }
+
+    private Profile getFresh(String userId) {
+        Profile profile = profiles.get(userId);
+        if (profile == null || SystemClock.elapsedRealtime() - profile.fetchedAt > TTL_MS) {
+            return null;
+        }
+        return profile;
+    }
+
+    /**
+     * The author fields shown on a review
+     */
+    private static class Profile {
+        final String name;
+        final String profileImageUrl;
+        final long fetchedAt;
+
+        Profile(String name, String profileImageUrl, long fetchedAt) {
+            this.name = name;
+            this.profileImageUrl = profileImageUrl;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -3,15 +3,15 @@ package com.app.chatori.repository;
 import androidx.lifecycle.MutableLiveData;
 
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,6 +19,7 @@ import java.util.Map;
  */
 public class UserRepository {
     private static final String COLLECTION_USERS = "Users";
+    private static final String FIELD_FAVORITES = "favorites";
     
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
@@ -29,6 +30,9 @@ public class UserRepository {
     // LiveData for current user
     private final MutableLiveData<User> currentUserLiveData = new MutableLiveData<>();
     
+    // Last known state of the signed-in user, updated optimistically on favorite changes
+    private User cachedUser;
+    
     private UserRepository() {
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
@@ -69,6 +73,7 @@ public class UserRepository {
      * @return Task for the operation
      */
     public Task<Void> updateUser(User user) {
+        UserProfileCache.getInstance().invalidate(user.getUserId());
         return db.collection(COLLECTION_USERS)
                 .document(user.getUserId())
                 .set(user);
@@ -81,6 +86,7 @@ public class UserRepository {
      * @return Task for the operation
      */
     public Task<Void> updateProfileImage(String userId, String imageUrl) {
+        UserProfileCache.getInstance().invalidate(userId);
         return db.collection(COLLECTION_USERS)
                 .document(userId)
                 .update("profileImageUrl", imageUrl);
@@ -93,83 +99,120 @@ public class UserRepository {
      * @return Task for the operation
      */
     public Task<Void> updateUser(String userId, Map<String, Object> updates) {
+        UserProfileCache.getInstance().invalidate(userId);
         return db.collection(COLLECTION_USERS)
                 .document(userId)
                 .update(updates);
     }
     
     /**
-     * Adds a stall to user's favorites
+     * Adds a stall to user's favorites with a single arrayUnion write.
+     * The cached user is updated right away and rolled back if the write fails.
      * @param userId ID of the user
      * @param stallId ID of the stall to add to favorites
      * @return Task for the operation
      */
     public Task<Void> addToFavorites(String userId, String stallId) {
-        DocumentReference userRef = db.collection(COLLECTION_USERS).document(userId);
-        return db.runTransaction(transaction -> {
-            DocumentSnapshot snapshot = transaction.get(userRef);
-            User user = snapshot.toObject(User.class);
-            if (user != null) {
-                user.addFavorite(stallId);
-                transaction.set(userRef, user);
-            }
-            return null;
-        });
+        boolean changed = setCachedFavorite(userId, stallId, true);
+        return db.collection(COLLECTION_USERS)
+                .document(userId)
+                .update(FIELD_FAVORITES, FieldValue.arrayUnion(stallId))
+                .addOnFailureListener(e -> {
+                    if (changed) {
+                        setCachedFavorite(userId, stallId, false);
+                    }
+                });
     }
     
     /**
-     * Removes a stall from user's favorites
+     * Removes a stall from user's favorites with a single arrayRemove write.
+     * The cached user is updated right away and rolled back if the write fails.
      * @param userId ID of the user
      * @param stallId ID of the stall to remove from favorites
      * @return Task for the operation
      */
     public Task<Void> removeFromFavorites(String userId, String stallId) {
-        DocumentReference userRef = db.collection(COLLECTION_USERS).document(userId);
-        return db.runTransaction(transaction -> {
-            DocumentSnapshot snapshot = transaction.get(userRef);
-            User user = snapshot.toObject(User.class);
-            if (user != null) {
-                List<String> favorites = user.getFavorites();
-                if (favorites != null) {
-                    favorites.remove(stallId);
-                    user.setFavorites(favorites);
-                    transaction.set(userRef, user);
-                }
-            }
-            return null;
-        });
+        boolean changed = setCachedFavorite(userId, stallId, false);
+        return db.collection(COLLECTION_USERS)
+                .document(userId)
+                .update(FIELD_FAVORITES, FieldValue.arrayRemove(stallId))
+                .addOnFailureListener(e -> {
+                    if (changed) {
+                        setCachedFavorite(userId, stallId, true);
+                    }
+                });
     }
     
     /**
-     * Toggles a stall in user's favorites (adds if not present, removes if present)
+     * Toggles a stall in user's favorites (adds if not present, removes if present).
+     * Uses the cached user to decide, and only reads the user document when
+     * nothing is cached.
      * @param userId ID of the user
      * @param stallId ID of the stall to toggle in favorites
      * @return Task for the operation
      */
     public Task<Void> toggleFavoriteStall(String userId, String stallId) {
-        DocumentReference userRef = db.collection(COLLECTION_USERS).document(userId);
-        return db.runTransaction(transaction -> {
-            DocumentSnapshot snapshot = transaction.get(userRef);
-            User user = snapshot.toObject(User.class);
-            if (user != null) {
-                List<String> favorites = user.getFavorites();
-                if (favorites == null) {
-                    favorites = new ArrayList<>();
-                }
-                
-                if (favorites.contains(stallId)) {
-                    favorites.remove(stallId);
-                } else {
-                    favorites.add(stallId);
-                }
-                
-                user.setFavorites(favorites);
-                transaction.set(userRef, user);
+        User user = getCachedUser(userId);
+        if (user != null) {
+            return user.isFavorite(stallId)
+                    ? removeFromFavorites(userId, stallId)
+                    : addToFavorites(userId, stallId);
+        }
+        
+        return getUserById(userId).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
             }
-            return null;
+            User loaded = UserCodec.decode(task.getResult());
+            cacheUser(loaded);
+            return loaded != null && loaded.isFavorite(stallId)
+                    ? removeFromFavorites(userId, stallId)
+                    : addToFavorites(userId, stallId);
         });
     }
     
+    /**
+     * Remembers the signed-in user's latest state, for example after a screen read it
+     * @param user User read from Firestore
+     */
+    public void cacheUser(User user) {
+        FirebaseUser firebaseUser = auth.getCurrentUser();
+        if (user != null && firebaseUser != null && firebaseUser.getUid().equals(user.getUserId())) {
+            cachedUser = user;
+        }
+    }
+    
+    /**
+     * Gets the cached state of a user without reading Firestore
+     * @param userId ID of the user
+     * @return The cached user, or null if that user is not cached
+     */
+    public User getCachedUser(String userId) {
+        User user = cachedUser;
+        return user != null && userId.equals(user.getUserId()) ? user : null;
+    }
+    
+    /**
+     * Applies a favorite change to the cached user and publishes it
+     * @return True if the cached user changed
+     */
+    private boolean setCachedFavorite(String userId, String stallId, boolean favorite) {
+        User user = getCachedUser(userId);
+        if (user == null || user.isFavorite(stallId) == favorite) {
+            return false;
+        }
+        
+        if (favorite) {
+            user.addFavorite(stallId);
+        } else {
+            user.removeFavorite(stallId);
+        }
+        if (currentUserLiveData.getValue() == user) {
+            currentUserLiveData.setValue(user);
+        }
+        return true;
+    }
+    
     /**
      * Gets the currently authenticated user from Firestore
      * @return LiveData containing the current user
@@ -179,7 +222,8 @@ public class UserRepository {
         if (firebaseUser != null) {
             getUserById(firebaseUser.getUid())
                 .addOnSuccessListener(documentSnapshot -> {
-                    User user = documentSnapshot.toObject(User.class);
+                    User user = UserCodec.decode(documentSnapshot);
+                    cacheUser(user);
                     currentUserLiveData.setValue(user);
                 });
         } else {
@@ -20,22 +20,29 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.app.chatori.R;
 import com.app.chatori.adapter.StallAdapter;
 import com.app.chatori.model.Stall;
+import com.app.chatori.repository.StallColumns;
+import com.app.chatori.repository.StallPage;
 import com.app.chatori.repository.StallRepository;
 import com.app.chatori.ui.search.SearchActivity;
 import com.app.chatori.utils.LocationUtils;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Home fragment that displays recommended, nearby, and top-rated stalls.
  */
 public class HomeFragment extends Fragment {
 
+    // Number of stalls shown in each section
+    private static final int SECTION_SIZE = 10;
+    // Radius searched first for the nearby section, widened until it is full
+    private static final double NEARBY_RADIUS_KM = 5;
+
     private RecyclerView rvRecommendedStalls, rvNearbyStalls, rvTopRatedStalls;
     private TextView tvViewAllRecommended, tvViewAllNearby, tvViewAllTopRated;
     private LinearLayout searchContainer;
@@ -43,7 +50,6 @@ public class HomeFragment extends Fragment {
 
     private StallRepository stallRepository;
     private StallAdapter recommendedAdapter, nearbyAdapter, topRatedAdapter;
-    private List<Stall> allStalls = new ArrayList<>();
     private Location currentLocation;
 
     @Nullable
@@ -137,89 +143,63 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Loads all stalls from Firestore
+     * Loads the recommended and top rated sections, one page of each
      */
     private void loadStalls() {
         progressBar.setVisibility(View.VISIBLE);
 
-        stallRepository.getAllStalls()
-                .addOnSuccessListener(this::processStalls)
-                .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    Toast.makeText(getContext(), getString(R.string.error_loading_stalls), Toast.LENGTH_SHORT).show();
-                });
-    }
+        Task<StallPage> recommended = stallRepository.getStallsPage(
+                StallPage.Filter.NONE, StallPage.Sort.POPULAR, null, SECTION_SIZE);
+        Task<StallPage> topRated = stallRepository.getStallsPage(
+                StallPage.Filter.NONE, StallPage.Sort.RATING, null, SECTION_SIZE);
 
-    /**
-     * Processes the stalls from Firestore and updates the UI
-     */
-    private void processStalls(QuerySnapshot querySnapshot) {
-        allStalls.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Stall stall = document.toObject(Stall.class);
-            if (stall != null) {
-                allStalls.add(stall);
+        recommended.addOnSuccessListener(page -> {
+            if (getView() != null) {
+                recommendedAdapter.updateStalls(page.getStalls());
             }
-        }
-
-        // Update all adapters
-        updateRecommendedStalls();
-        updateNearbyStalls();
-        updateTopRatedStalls();
-
-        progressBar.setVisibility(View.GONE);
-    }
+        });
+        topRated.addOnSuccessListener(page -> {
+            if (getView() != null) {
+                topRatedAdapter.updateStalls(page.getStalls());
+            }
+        });
 
-    /**
-     * Updates the recommended stalls section
-     * For now, we'll just show a random selection of stalls
-     */
-    private void updateRecommendedStalls() {
-        if (allStalls.isEmpty()) return;
-
-        List<Stall> recommendedStalls = new ArrayList<>(allStalls);
-        Collections.shuffle(recommendedStalls);
-        
-        // Limit to 10 stalls
-        int limit = Math.min(recommendedStalls.size(), 10);
-        recommendedStalls = recommendedStalls.subList(0, limit);
-        
-        recommendedAdapter.updateStalls(recommendedStalls);
+        Tasks.whenAllComplete(recommended, topRated).addOnCompleteListener(task -> {
+            if (getView() == null) return;
+            progressBar.setVisibility(View.GONE);
+            if (!recommended.isSuccessful() || !topRated.isSuccessful()) {
+                Toast.makeText(getContext(), getString(R.string.error_loading_stalls), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
-     * Updates the nearby stalls section based on current location
+     * Loads the nearby stalls section based on current location.
+     * Only the geohash cells around the location are read, widening the
+     * radius until there are enough stalls to fill the section.
      */
     private void updateNearbyStalls() {
-        if (allStalls.isEmpty() || currentLocation == null) return;
-
-        // Sort stalls by distance
-        List<Stall> nearbyStalls = LocationUtils.sortStallsByDistance(allStalls, currentLocation);
-        
-        // Limit to 10 stalls
-        int limit = Math.min(nearbyStalls.size(), 10);
-        nearbyStalls = nearbyStalls.subList(0, limit);
-        
-        nearbyAdapter.updateStalls(nearbyStalls);
-    }
-
-    /**
-     * Updates the top rated stalls section
-     */
-    private void updateTopRatedStalls() {
-        if (allStalls.isEmpty()) return;
-
-        List<Stall> topRatedStalls = new ArrayList<>(allStalls);
-        
-        // Sort by rating (highest first)
-        Collections.sort(topRatedStalls, (s1, s2) -> Float.compare(s2.getRating(), s1.getRating()));
-        
-        // Limit to 10 stalls
-        int limit = Math.min(topRatedStalls.size(), 10);
-        topRatedStalls = topRatedStalls.subList(0, limit);
-        
-        topRatedAdapter.updateStalls(topRatedStalls);
+        if (currentLocation == null) return;
+
+        Location origin = currentLocation;
+        stallRepository.getStallsAround(origin.getLatitude(), origin.getLongitude(), NEARBY_RADIUS_KM, SECTION_SIZE)
+                .addOnSuccessListener(stalls -> {
+                    if (getView() == null) return;
+
+                    // Pick the closest stalls without sorting every result
+                    StallColumns columns = new StallColumns(stalls);
+                    int[] nearest = columns.nearest(columns.allRows(),
+                            origin.getLatitude(), origin.getLongitude(), SECTION_SIZE);
+
+                    List<Stall> nearbyStalls = columns.toStalls(nearest);
+                    Map<String, Double> distances = new HashMap<>();
+                    for (int row : nearest) {
+                        distances.put(columns.get(row).getStallId(),
+                                columns.distanceKm(row, origin.getLatitude(), origin.getLongitude()));
+                    }
+
+                    nearbyAdapter.updateStalls(nearbyStalls, distances);
+                });
     }
 
     /**
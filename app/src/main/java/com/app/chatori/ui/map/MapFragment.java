@@ -16,6 +16,7 @@ import androidx.fragment.app.Fragment;
 
 import com.app.chatori.R;
 import com.app.chatori.model.Stall;
+import com.app.chatori.repository.StallColumns;
 import com.app.chatori.repository.StallRepository;
 import com.app.chatori.ui.stall.StallDetailActivity;
 import com.app.chatori.utils.LocationUtils;
@@ -23,26 +24,26 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Fragment for displaying stalls on a map.
  */
 public class MapFragment extends Fragment implements OnMapReadyCallback {
 
+    // Below this zoom the viewport covers too much of the city to load by tiles
+    private static final float MIN_VIEWPORT_ZOOM = 10f;
+    // Fraction of the visible region loaded on each side as a prefetch margin
+    private static final double VIEWPORT_PADDING = 0.25;
+
     private GoogleMap mMap;
     private ProgressBar progressBar;
     private ImageButton btnMyLocation;
@@ -52,9 +53,13 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private ChipGroup chipGroupDishType;
 
     private StallRepository stallRepository;
-    private List<Stall> allStalls = new ArrayList<>();
-    private Map<String, Stall> markerStallMap = new HashMap<>();
+    // Loaded stalls as a column store, so filter changes scan primitive arrays
+    private StallColumns allStalls = new StallColumns(new ArrayList<>());
+    private StallMarkerLayer markerLayer;
     private Location currentLocation;
+    private int loadGeneration = 0;
+    // Whether the map is zoomed out too far to load stalls by tiles
+    private boolean zoomedOut = false;
 
     // Filter states
     private double currentRadius = 5.0; // Default 5 km
@@ -150,7 +155,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             chip.setOnCheckedChangeListener((buttonView, isChecked) -> {
                 if (isChecked) {
                     currentRadius = radius;
-                    filterStalls();
+                    loadStalls();
                     chipGroupRadius.setVisibility(View.GONE);
                 }
             });
@@ -205,7 +210,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
                                 LatLng latLng = new LatLng(location.getLatitude(), location.getLongitude());
                                 mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 15));
                             }
-                            loadAllStalls();
+                            loadStalls();
                         }
                     });
         } else {
@@ -216,82 +221,104 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /**
-     * Loads all stalls from Firestore
+     * Loads the stalls to show on the map.
+     * With a radius selected only the geohash cells around the user are read,
+     * otherwise only the tiles covering the visible part of the map are read.
      */
-    private void loadAllStalls() {
-        progressBar.setVisibility(View.VISIBLE);
+    private void loadStalls() {
+        final int generation = ++loadGeneration;
+
+        Task<List<Stall>> stallsTask;
+        if (isRadiusMode()) {
+            progressBar.setVisibility(View.VISIBLE);
+            stallsTask = stallRepository.getStallsNear(
+                    currentLocation.getLatitude(), currentLocation.getLongitude(), currentRadius);
+        } else {
+            stallsTask = loadVisibleStalls();
+            if (stallsTask == null) {
+                showZoomedOut();
+                return;
+            }
+            zoomedOut = false;
+        }
 
-        stallRepository.getAllStalls()
-                .addOnSuccessListener(this::processStalls)
+        stallsTask
+                .addOnSuccessListener(stalls -> {
+                    // Ignore results for an older request
+                    if (generation != loadGeneration || !isAdded()) return;
+                    processStalls(stalls);
+                })
                 .addOnFailureListener(e -> {
+                    // A newer request has replaced this one, or the fragment is gone
+                    if (generation != loadGeneration || !isAdded()) return;
                     progressBar.setVisibility(View.GONE);
                     Toast.makeText(getContext(), getString(R.string.error_loading_stalls), Toast.LENGTH_SHORT).show();
                 });
     }
 
     /**
-     * Processes the stalls from Firestore and updates the map
+     * Clears the markers when the map is zoomed out too far to load stalls,
+     * and asks the user to zoom in once each time that happens
      */
-    private void processStalls(QuerySnapshot querySnapshot) {
-        allStalls.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Stall stall = document.toObject(Stall.class);
-            if (stall != null) {
-                allStalls.add(stall);
-            }
+    private void showZoomedOut() {
+        if (zoomedOut) return;
+        zoomedOut = true;
+        processStalls(new ArrayList<>());
+        if (getContext() != null) {
+            Toast.makeText(getContext(), getString(R.string.zoom_in_to_see_stalls), Toast.LENGTH_SHORT).show();
         }
+    }
+
+    /**
+     * Loads the stalls inside the visible region plus a small margin,
+     * so short pans are already covered
+     * @return Task containing the stalls, or null if the map is too far zoomed out
+     */
+    private Task<List<Stall>> loadVisibleStalls() {
+        if (mMap == null || mMap.getCameraPosition().zoom < MIN_VIEWPORT_ZOOM) return null;
+
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        double south = bounds.southwest.latitude;
+        double west = bounds.southwest.longitude;
+        double north = bounds.northeast.latitude;
+        double east = bounds.northeast.longitude;
+
+        double lonSpan = east >= west ? east - west : east + 360 - west;
+        double latPadding = (north - south) * VIEWPORT_PADDING;
+        double lonPadding = lonSpan * VIEWPORT_PADDING;
+
+        return stallRepository.getStallsInBounds(
+                south - latPadding, west - lonPadding, north + latPadding, east + lonPadding);
+    }
+
+    /**
+     * Checks if stalls are limited to a radius around the user
+     */
+    private boolean isRadiusMode() {
+        return currentRadius > 0 && currentLocation != null;
+    }
+
+    /**
+     * Processes the loaded stalls and updates the map
+     */
+    private void processStalls(List<Stall> stalls) {
+        allStalls = new StallColumns(stalls);
 
         filterStalls();
         progressBar.setVisibility(View.GONE);
     }
 
     /**
-     * Filters stalls based on radius and dish type
+     * Filters the loaded stalls by dish type and shows them as markers
      */
     private void filterStalls() {
-        if (mMap == null || allStalls.isEmpty()) return;
-
-        // Clear existing markers
-        mMap.clear();
-        markerStallMap.clear();
+        if (markerLayer == null) return;
 
-        // Filter stalls
-        List<Stall> filteredStalls = new ArrayList<>(allStalls);
-        
         // Filter by dish type
-        if (!currentDishType.isEmpty()) {
-            List<Stall> dishTypeFiltered = new ArrayList<>();
-            for (Stall stall : filteredStalls) {
-                if (stall.getDishType().equalsIgnoreCase(currentDishType)) {
-                    dishTypeFiltered.add(stall);
-                }
-            }
-            filteredStalls = dishTypeFiltered;
-        }
+        int[] rows = allStalls.filter(allStalls.allRows(), currentDishType, "", 0);
         
-        // Filter by radius
-        if (currentRadius > 0 && currentLocation != null) {
-            filteredStalls = LocationUtils.filterStallsByRadius(filteredStalls, currentLocation, currentRadius);
-        }
-        
-        // Add markers for filtered stalls
-        for (Stall stall : filteredStalls) {
-            LatLng position = new LatLng(
-                    stall.getLocation().getLatitude(),
-                    stall.getLocation().getLongitude());
-            
-            MarkerOptions markerOptions = new MarkerOptions()
-                    .position(position)
-                    .title(stall.getName())
-                    .snippet(stall.getDishType() + " • " + stall.getArea())
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED));
-            
-            Marker marker = mMap.addMarker(markerOptions);
-            if (marker != null) {
-                markerStallMap.put(marker.getId(), stall);
-            }
-        }
+        // Only markers that changed are touched
+        markerLayer.setStalls(allStalls.toStalls(rows));
     }
 
     @Override
@@ -303,9 +330,21 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         mMap.getUiSettings().setZoomControlsEnabled(true);
         mMap.getUiSettings().setCompassEnabled(true);
         
+        // Set up the marker layer, re-clustering when the zoom changes
+        markerLayer = new StallMarkerLayer(mMap, getResources());
+        mMap.setOnCameraIdleListener(() -> {
+            markerLayer.onCameraIdle();
+            
+            // Without a radius, follow the visible part of the map
+            if (!isRadiusMode()) {
+                loadStalls();
+            }
+        });
+        mMap.setOnMarkerClickListener(markerLayer::onMarkerClick);
+        
         // Set up info window click listener
         mMap.setOnInfoWindowClickListener(marker -> {
-            Stall stall = markerStallMap.get(marker.getId());
+            Stall stall = markerLayer.getStall(marker);
             if (stall != null) {
                 Intent intent = new Intent(getContext(), StallDetailActivity.class);
                 intent.putExtra("stall_id", stall.getStallId());
@@ -317,7 +356,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         if (currentLocation != null) {
             LatLng latLng = new LatLng(currentLocation.getLatitude(), currentLocation.getLongitude());
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 15));
-            loadAllStalls();
+            loadStalls();
         }
     }
 
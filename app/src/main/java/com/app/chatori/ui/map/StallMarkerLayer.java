@@ -0,0 +1,258 @@
+package com.app.chatori.ui.map;
+
+import android.content.res.Resources;
+
+import com.app.chatori.R;
+import com.app.chatori.model.Stall;
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the stall markers on a map in sync with a list of stalls.
+ * Only the markers that changed are added, moved or removed, and nearby
+ * stalls are grouped into cluster markers on a screen-space grid at low zoom.
+ */
+public class StallMarkerLayer {
+    // Stalls are shown individually from this zoom level up
+    private static final float CLUSTER_MAX_ZOOM = 14f;
+    // Size of a cluster cell in map pixels
+    private static final int CLUSTER_CELL_PX = 96;
+    private static final String CLUSTER_KEY_PREFIX = "cluster:";
+
+    private final GoogleMap map;
+    private final Resources resources;
+
+    // Marker key (stall ID or cluster cell) to the marker currently on the map
+    private final Map<String, Marker> markers = new HashMap<>();
+    // Marker key to the options the marker was last drawn with
+    private final Map<String, MarkerSpec> shownSpecs = new HashMap<>();
+    // Marker ID to the stall it represents, for info window clicks
+    private final Map<String, Stall> markerStallMap = new HashMap<>();
+
+    private List<Stall> stalls = Collections.emptyList();
+    private int renderedGridLevel = Integer.MIN_VALUE;
+
+    /**
+     * @param map Map to draw on
+     * @param resources Resources for marker labels
+     */
+    public StallMarkerLayer(GoogleMap map, Resources resources) {
+        this.map = map;
+        this.resources = resources;
+    }
+
+    /**
+     * Shows the given stalls, updating only the markers that changed
+     * @param newStalls Stalls that should be visible
+     */
+    public void setStalls(List<Stall> newStalls) {
+        stalls = newStalls != null ? newStalls : Collections.emptyList();
+        render();
+    }
+
+    /**
+     * Re-clusters the markers if the zoom level moved to a different grid.
+     * Call this from the map's camera idle listener.
+     */
+    public void onCameraIdle() {
+        if (gridLevel() != renderedGridLevel) {
+            render();
+        }
+    }
+
+    /**
+     * Gets the stall shown by a marker
+     * @param marker The marker
+     * @return The stall, or null for cluster markers
+     */
+    public Stall getStall(Marker marker) {
+        return markerStallMap.get(marker.getId());
+    }
+
+    /**
+     * Zooms in on a cluster marker
+     * @param marker The clicked marker
+     * @return True if the marker was a cluster and the click was handled
+     */
+    public boolean onMarkerClick(Marker marker) {
+        if (markerStallMap.containsKey(marker.getId())) {
+            return false;
+        }
+        float zoom = map.getCameraPosition().zoom + 2;
+        map.animateCamera(CameraUpdateFactory.newLatLngZoom(marker.getPosition(), zoom));
+        return true;
+    }
+
+    private void render() {
+        int level = gridLevel();
+        Map<String, MarkerSpec> wanted = level < 0 ? buildStallSpecs() : buildClusterSpecs(level);
+        renderedGridLevel = level;
+
+        // Remove markers that are no longer wanted
+        Iterator<Map.Entry<String, Marker>> iterator = markers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Marker> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                markerStallMap.remove(entry.getValue().getId());
+                entry.getValue().remove();
+                shownSpecs.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        // Add new markers and update the ones that changed
+        for (Map.Entry<String, MarkerSpec> entry : wanted.entrySet()) {
+            String key = entry.getKey();
+            MarkerSpec spec = entry.getValue();
+            Marker marker = markers.get(key);
+
+            if (marker == null) {
+                marker = map.addMarker(spec.toOptions());
+                if (marker == null) continue;
+                markers.put(key, marker);
+            } else {
+                MarkerSpec shown = shownSpecs.get(key);
+                if (!spec.position.equals(shown.position)) {
+                    marker.setPosition(spec.position);
+                }
+                if (!spec.title.equals(shown.title) || !spec.snippet.equals(shown.snippet)) {
+                    marker.setTitle(spec.title);
+                    marker.setSnippet(spec.snippet);
+                    if (marker.isInfoWindowShown()) {
+                        marker.showInfoWindow();
+                    }
+                }
+            }
+
+            shownSpecs.put(key, spec);
+            if (spec.stall != null) {
+                markerStallMap.put(marker.getId(), spec.stall);
+            }
+        }
+    }
+
+    /**
+     * Gets the clustering grid for the current zoom
+     * @return Whole zoom level used for the grid, or -1 when not clustering
+     */
+    private int gridLevel() {
+        float zoom = map.getCameraPosition().zoom;
+        if (zoom >= CLUSTER_MAX_ZOOM) {
+            return -1;
+        }
+        return (int) Math.floor(zoom);
+    }
+
+    private Map<String, MarkerSpec> buildStallSpecs() {
+        Map<String, MarkerSpec> specs = new LinkedHashMap<>();
+        for (Stall stall : stalls) {
+            if (stall.getLocation() == null || stall.getStallId() == null) continue;
+            specs.put(stall.getStallId(), MarkerSpec.forStall(stall));
+        }
+        return specs;
+    }
+
+    private Map<String, MarkerSpec> buildClusterSpecs(int level) {
+        // World size in pixels at this zoom, divided into cells of CLUSTER_CELL_PX
+        double cellsPerAxis = 256.0 * (1L << level) / CLUSTER_CELL_PX;
+
+        Map<String, List<Stall>> cells = new LinkedHashMap<>();
+        for (Stall stall : stalls) {
+            if (stall.getLocation() == null || stall.getStallId() == null) continue;
+
+            double latitude = stall.getLocation().getLatitude();
+            double longitude = stall.getLocation().getLongitude();
+            long cellX = (long) Math.floor(mercatorX(longitude) * cellsPerAxis);
+            long cellY = (long) Math.floor(mercatorY(latitude) * cellsPerAxis);
+
+            String cellKey = level + "/" + cellX + "/" + cellY;
+            List<Stall> cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new ArrayList<>();
+                cells.put(cellKey, cell);
+            }
+            cell.add(stall);
+        }
+
+        Map<String, MarkerSpec> specs = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Stall>> cell : cells.entrySet()) {
+            List<Stall> cellStalls = cell.getValue();
+            if (cellStalls.size() == 1) {
+                Stall stall = cellStalls.get(0);
+                specs.put(stall.getStallId(), MarkerSpec.forStall(stall));
+            } else {
+                specs.put(CLUSTER_KEY_PREFIX + cell.getKey(), MarkerSpec.forCluster(cellStalls,
+                        resources.getQuantityString(R.plurals.cluster_stall_count, cellStalls.size(), cellStalls.size())));
+            }
+        }
+        return specs;
+    }
+
+    private static double mercatorX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    private static double mercatorY(double latitude) {
+        double clamped = Math.max(Math.min(latitude, 85.0511), -85.0511);
+        double sin = Math.sin(Math.toRadians(clamped));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    /**
+     * What a marker should look like, used to detect changes between renders
+     */
+    private static class MarkerSpec {
+        final LatLng position;
+        final String title;
+        final String snippet;
+        final float hue;
+        final Stall stall;
+
+        MarkerSpec(LatLng position, String title, String snippet, float hue, Stall stall) {
+            this.position = position;
+            this.title = title;
+            this.snippet = snippet;
+            this.hue = hue;
+            this.stall = stall;
+        }
+
+        static MarkerSpec forStall(Stall stall) {
+            LatLng position = new LatLng(
+                    stall.getLocation().getLatitude(),
+                    stall.getLocation().getLongitude());
+            String title = stall.getName() != null ? stall.getName() : "";
+            String snippet = stall.getDishType() + " • " + stall.getArea();
+            return new MarkerSpec(position, title, snippet, BitmapDescriptorFactory.HUE_RED, stall);
+        }
+
+        static MarkerSpec forCluster(List<Stall> cellStalls, String title) {
+            double latitude = 0, longitude = 0;
+            for (Stall stall : cellStalls) {
+                latitude += stall.getLocation().getLatitude();
+                longitude += stall.getLocation().getLongitude();
+            }
+            LatLng centroid = new LatLng(latitude / cellStalls.size(), longitude / cellStalls.size());
+            return new MarkerSpec(centroid, title, "", BitmapDescriptorFactory.HUE_ORANGE, null);
+        }
+
+        MarkerOptions toOptions() {
+            return new MarkerOptions()
+                    .position(position)
+                    .title(title)
+                    .snippet(snippet)
+                    .icon(BitmapDescriptorFactory.defaultMarker(hue));
+        }
+    }
+}
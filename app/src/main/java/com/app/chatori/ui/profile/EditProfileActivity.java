@@ -19,6 +19,7 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.app.chatori.R;
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.app.chatori.repository.UserRepository;
 import com.app.chatori.utils.UIUtils;
 import com.google.firebase.auth.FirebaseAuth;
@@ -117,7 +118,7 @@ public class EditProfileActivity extends AppCompatActivity {
                 .addOnSuccessListener(documentSnapshot -> {
                     progressBar.setVisibility(View.GONE);
                     if (documentSnapshot.exists()) {
-                        currentUser = documentSnapshot.toObject(User.class);
+                        currentUser = UserCodec.decode(documentSnapshot);
                         if (currentUser != null) {
                             updateUI(currentUser);
                         }
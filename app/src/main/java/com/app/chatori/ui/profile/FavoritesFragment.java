@@ -18,6 +18,7 @@ import com.app.chatori.R;
 import com.app.chatori.adapter.StallAdapter;
 import com.app.chatori.model.Stall;
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.app.chatori.repository.StallRepository;
 import com.app.chatori.repository.UserRepository;
 import com.google.firebase.auth.FirebaseAuth;
@@ -40,6 +41,8 @@ public class FavoritesFragment extends Fragment {
     private StallRepository stallRepository;
     private StallAdapter stallAdapter;
     private List<Stall> favoriteStalls = new ArrayList<>();
+    // Favorite IDs the list was last loaded for, to skip reloads on resume
+    private List<String> loadedFavoriteIds;
 
     @Nullable
     @Override
@@ -58,8 +61,8 @@ public class FavoritesFragment extends Fragment {
         // Set up RecyclerView
         setupRecyclerView();
 
-        // Load user's favorite stalls
-        loadFavoriteStalls();
+        // Favorite stalls are loaded in onResume
+        loadedFavoriteIds = null;
 
         return view;
     }
@@ -80,19 +83,25 @@ public class FavoritesFragment extends Fragment {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) return;
 
-        progressBar.setVisibility(View.VISIBLE);
+        if (loadedFavoriteIds == null) {
+            progressBar.setVisibility(View.VISIBLE);
+        }
 
         // First get the user to get their favorite stall IDs
         userRepository.getUserById(currentUser.getUid())
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.decode(documentSnapshot);
+                        userRepository.cacheUser(user);
                         if (user != null && user.getFavoriteStalls() != null && !user.getFavoriteStalls().isEmpty()) {
-                            // Then get each stall by ID
-                            loadStallsByIds(user.getFavoriteStalls());
+                            // Then get the stalls, unless the favorites did not change
+                            if (!user.getFavoriteStalls().equals(loadedFavoriteIds)) {
+                                loadStallsByIds(user.getFavoriteStalls());
+                            }
                         } else {
                             // No favorite stalls
-                            favoriteStalls.clear();
+                            loadedFavoriteIds = new ArrayList<>();
+                            favoriteStalls = new ArrayList<>();
                             stallAdapter.updateStalls(favoriteStalls);
                             updateEmptyState();
                             progressBar.setVisibility(View.GONE);
@@ -108,43 +117,26 @@ public class FavoritesFragment extends Fragment {
     }
 
     /**
-     * Loads stalls by their IDs
+     * Loads stalls by their IDs in favorite order
      */
     private void loadStallsByIds(List<String> stallIds) {
-        favoriteStalls.clear();
-        final int[] loadedCount = {0};
-        final int totalCount = stallIds.size();
-
-        for (String stallId : stallIds) {
-            stallRepository.getStallById(stallId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        loadedCount[0]++;
-                        
-                        if (documentSnapshot.exists()) {
-                            Stall stall = documentSnapshot.toObject(Stall.class);
-                            if (stall != null) {
-                                favoriteStalls.add(stall);
-                            }
-                        }
-                        
-                        // Check if all stalls have been loaded
-                        if (loadedCount[0] >= totalCount) {
-                            stallAdapter.updateStalls(favoriteStalls);
-                            updateEmptyState();
-                            progressBar.setVisibility(View.GONE);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        loadedCount[0]++;
-                        
-                        // Check if all stalls have been loaded
-                        if (loadedCount[0] >= totalCount) {
-                            stallAdapter.updateStalls(favoriteStalls);
-                            updateEmptyState();
-                            progressBar.setVisibility(View.GONE);
-                        }
-                    });
-        }
+        List<String> requestedIds = new ArrayList<>(stallIds);
+        stallRepository.getStallsByIds(requestedIds)
+                .addOnSuccessListener(stalls -> {
+                    if (getView() == null) return;
+
+                    loadedFavoriteIds = requestedIds;
+                    favoriteStalls = stalls;
+                    stallAdapter.updateStalls(favoriteStalls);
+                    updateEmptyState();
+                    progressBar.setVisibility(View.GONE);
+                })
+                .addOnFailureListener(e -> {
+                    if (getView() == null) return;
+
+                    progressBar.setVisibility(View.GONE);
+                    Toast.makeText(getContext(), getString(R.string.error_loading_favorites), Toast.LENGTH_SHORT).show();
+                });
     }
 
     /**
@@ -163,7 +155,7 @@ public class FavoritesFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Reload favorite stalls when fragment resumes
+        // Pick up favorites added or removed on other screens
         loadFavoriteStalls();
     }
 }
@@ -17,11 +17,13 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.app.chatori.R;
 import com.app.chatori.adapter.ReviewAdapter;
 import com.app.chatori.model.Review;
+import com.app.chatori.repository.ReviewPage;
 import com.app.chatori.repository.ReviewRepository;
+import com.app.chatori.repository.UserProfileCache;
+import com.app.chatori.utils.EndlessScrollListener;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,6 +40,13 @@ public class MyReviewsFragment extends Fragment {
     private ReviewRepository reviewRepository;
     private ReviewAdapter reviewAdapter;
     private List<Review> myReviews = new ArrayList<>();
+    
+    // Paging state
+    private DocumentSnapshot lastReview;
+    private boolean isLoading = false;
+    private boolean hasMore = true;
+    // Bumped on every reload so pages from an older load are dropped
+    private int loadGeneration;
 
     @Nullable
     @Override
@@ -55,8 +64,7 @@ public class MyReviewsFragment extends Fragment {
         // Set up RecyclerView
         setupRecyclerView();
 
-        // Load user's reviews
-        loadMyReviews();
+        // User's reviews are loaded in onResume
 
         return view;
     }
@@ -66,43 +74,84 @@ public class MyReviewsFragment extends Fragment {
      */
     private void setupRecyclerView() {
         reviewAdapter = new ReviewAdapter(getContext(), myReviews);
-        rvMyReviews.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        rvMyReviews.setLayoutManager(layoutManager);
         rvMyReviews.setAdapter(reviewAdapter);
+        
+        // Fetch the next page before the end of the list is reached
+        rvMyReviews.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+            @Override
+            public void onLoadMore() {
+                loadNextPage();
+            }
+        });
     }
 
     /**
-     * Loads the user's reviews from Firestore
+     * Loads the first page of the user's reviews from Firestore
      */
     private void loadMyReviews() {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) return;
 
         progressBar.setVisibility(View.VISIBLE);
+        loadGeneration++;
+        lastReview = null;
+        hasMore = true;
+        isLoading = false;
+        loadNextPage();
+    }
 
-        reviewRepository.getReviewsByUserId(currentUser.getUid())
-                .addOnSuccessListener(this::processReviews)
+    /**
+     * Loads the page of reviews after the last one shown
+     */
+    private void loadNextPage() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null || isLoading || !hasMore) return;
+        isLoading = true;
+
+        DocumentSnapshot after = lastReview;
+        int generation = loadGeneration;
+        reviewRepository.getReviewsPageByUser(currentUser.getUid(), after, ReviewRepository.DEFAULT_PAGE_SIZE)
+                .addOnSuccessListener(page -> {
+                    if (generation == loadGeneration) {
+                        processReviews(page, after == null, generation);
+                    }
+                })
                 .addOnFailureListener(e -> {
+                    if (generation != loadGeneration || getContext() == null) return;
+                    isLoading = false;
                     progressBar.setVisibility(View.GONE);
                     Toast.makeText(getContext(), getString(R.string.error_loading_reviews), Toast.LENGTH_SHORT).show();
                 });
     }
 
     /**
-     * Processes the reviews from Firestore and updates the UI
+     * Adds a page of reviews and updates the UI
+     * @param firstPage True to replace the shown reviews instead of appending
+     * @param generation Load the page belongs to
      */
-    private void processReviews(QuerySnapshot querySnapshot) {
-        myReviews.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Review review = document.toObject(Review.class);
-            if (review != null) {
-                myReviews.add(review);
-            }
+    private void processReviews(ReviewPage page, boolean firstPage, int generation) {
+        List<Review> loaded = page.getReviews();
+        if (page.getCursor() != null) {
+            lastReview = page.getCursor();
         }
-
-        reviewAdapter.updateReviews(myReviews);
-        updateEmptyState();
-        progressBar.setVisibility(View.GONE);
+        hasMore = page.hasMore();
+
+        // Resolve current author names for the page before showing it
+        UserProfileCache.getInstance().fillAuthors(loaded)
+                .addOnCompleteListener(task -> {
+                    if (getView() == null || generation != loadGeneration) return;
+
+                    if (firstPage) {
+                        myReviews.clear();
+                    }
+                    myReviews.addAll(loaded);
+                    reviewAdapter.updateReviews(myReviews);
+                    updateEmptyState();
+                    progressBar.setVisibility(View.GONE);
+                    isLoading = false;
+                });
     }
 
     /**
@@ -121,7 +170,7 @@ public class MyReviewsFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Reload reviews when fragment resumes
+        // Reload the first page when the fragment resumes
         loadMyReviews();
     }
 }
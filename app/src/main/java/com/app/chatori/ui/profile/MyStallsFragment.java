@@ -20,8 +20,6 @@ import com.app.chatori.model.Stall;
 import com.app.chatori.repository.StallRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -79,7 +77,7 @@ public class MyStallsFragment extends Fragment {
 
         progressBar.setVisibility(View.VISIBLE);
 
-        stallRepository.getStallsByUserId(currentUser.getUid())
+        stallRepository.getStallsCreatedBy(currentUser.getUid())
                 .addOnSuccessListener(this::processStalls)
                 .addOnFailureListener(e -> {
                     progressBar.setVisibility(View.GONE);
@@ -88,17 +86,11 @@ public class MyStallsFragment extends Fragment {
     }
 
     /**
-     * Processes the stalls from Firestore and updates the UI
+     * Shows the user's stalls
      */
-    private void processStalls(QuerySnapshot querySnapshot) {
+    private void processStalls(List<Stall> stalls) {
         myStalls.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Stall stall = document.toObject(Stall.class);
-            if (stall != null) {
-                myStalls.add(stall);
-            }
-        }
+        myStalls.addAll(stalls);
 
         stallAdapter.updateStalls(myStalls);
         updateEmptyState();
@@ -17,6 +17,7 @@ import androidx.viewpager2.widget.ViewPager2;
 
 import com.app.chatori.R;
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.app.chatori.repository.UserRepository;
 import com.app.chatori.ui.auth.LoginActivity;
 import com.app.chatori.utils.UIUtils;
@@ -134,7 +135,7 @@ public class ProfileFragment extends Fragment {
         userRepository.getUserById(currentUser.getUid())
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.decode(documentSnapshot);
                         if (user != null) {
                             updateUI(user);
                         }
@@ -17,9 +17,11 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.app.chatori.R;
 import com.app.chatori.adapter.ReviewAdapter;
 import com.app.chatori.model.Review;
+import com.app.chatori.repository.ReviewPage;
 import com.app.chatori.repository.ReviewRepository;
+import com.app.chatori.repository.UserProfileCache;
+import com.app.chatori.utils.EndlessScrollListener;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +43,11 @@ public class AllReviewsActivity extends AppCompatActivity {
     
     private String stallId;
     private String stallName;
+    
+    // Paging state
+    private DocumentSnapshot lastReview;
+    private boolean isLoading = false;
+    private boolean hasMore = true;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -89,40 +96,67 @@ public class AllReviewsActivity extends AppCompatActivity {
      */
     private void setupRecyclerView() {
         reviewAdapter = new ReviewAdapter(this, reviews, false);
-        rvReviews.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvReviews.setLayoutManager(layoutManager);
         rvReviews.setAdapter(reviewAdapter);
+        
+        // Fetch the next page before the end of the list is reached
+        rvReviews.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+            @Override
+            public void onLoadMore() {
+                loadNextPage();
+            }
+        });
     }
 
     /**
-     * Loads reviews for the stall from Firestore
+     * Loads the first page of reviews for the stall from Firestore
      */
     private void loadReviews() {
         progressBar.setVisibility(View.VISIBLE);
+        lastReview = null;
+        hasMore = true;
+        reviews.clear();
+        loadNextPage();
+    }
+
+    /**
+     * Loads the page of reviews after the last one shown
+     */
+    private void loadNextPage() {
+        if (isLoading || !hasMore) return;
+        isLoading = true;
 
-        reviewRepository.getReviewsByStallId(stallId)
+        reviewRepository.getReviewsPageByStall(stallId, lastReview, ReviewRepository.DEFAULT_PAGE_SIZE)
                 .addOnSuccessListener(this::processReviews)
                 .addOnFailureListener(e -> {
+                    isLoading = false;
                     progressBar.setVisibility(View.GONE);
                     Toast.makeText(this, getString(R.string.error_loading_reviews), Toast.LENGTH_SHORT).show();
                 });
     }
 
     /**
-     * Processes the reviews from Firestore and updates the UI
+     * Appends a page of reviews and updates the UI
      */
-    private void processReviews(QuerySnapshot querySnapshot) {
-        reviews.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Review review = document.toObject(Review.class);
-            if (review != null) {
-                reviews.add(review);
-            }
+    private void processReviews(ReviewPage page) {
+        List<Review> loaded = page.getReviews();
+        if (page.getCursor() != null) {
+            lastReview = page.getCursor();
         }
+        hasMore = page.hasMore();
 
-        reviewAdapter.updateReviews(reviews);
-        updateEmptyState();
-        progressBar.setVisibility(View.GONE);
+        // Resolve current author names for the page before showing it
+        UserProfileCache.getInstance().fillAuthors(loaded)
+                .addOnCompleteListener(task -> {
+                    if (isDestroyed()) return;
+
+                    reviews.addAll(loaded);
+                    reviewAdapter.updateReviews(reviews);
+                    updateEmptyState();
+                    progressBar.setVisibility(View.GONE);
+                    isLoading = false;
+                });
     }
 
     /**
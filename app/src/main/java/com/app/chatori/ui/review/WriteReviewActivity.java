@@ -17,8 +17,8 @@ import androidx.appcompat.widget.Toolbar;
 import com.app.chatori.R;
 import com.app.chatori.model.Review;
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.app.chatori.repository.ReviewRepository;
-import com.app.chatori.repository.StallRepository;
 import com.app.chatori.repository.UserRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -31,6 +31,7 @@ import java.util.Map;
  * Activity for writing a review for a stall.
  */
 public class WriteReviewActivity extends AppCompatActivity {
+    private static final String STATE_PENDING_REVIEW_ID = "pending_review_id";
 
     private Toolbar toolbar;
     private TextView tvStallName;
@@ -40,12 +41,13 @@ public class WriteReviewActivity extends AppCompatActivity {
     private ProgressBar progressBar;
 
     private ReviewRepository reviewRepository;
-    private StallRepository stallRepository;
     private UserRepository userRepository;
     
     private String stallId;
     private String stallName;
     private float rating = 0;
+    // Generated on the first submit and reused by retries
+    private String pendingReviewId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,9 +64,14 @@ public class WriteReviewActivity extends AppCompatActivity {
 
         // Initialize repositories
         reviewRepository = ReviewRepository.getInstance();
-        stallRepository = StallRepository.getInstance();
         userRepository = UserRepository.getInstance();
 
+        // Reuse the ID of a review submitted before the process was killed,
+        // so submitting again cannot count its rating twice
+        if (savedInstanceState != null) {
+            pendingReviewId = savedInstanceState.getString(STATE_PENDING_REVIEW_ID);
+        }
+
         // Initialize views
         toolbar = findViewById(R.id.toolbar);
         tvStallName = findViewById(R.id.tv_stall_name);
@@ -126,11 +133,15 @@ public class WriteReviewActivity extends AppCompatActivity {
         userRepository.getUserById(currentUser.getUid())
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.decode(documentSnapshot);
                         if (user != null) {
                             // Create review object
                             Review review = new Review();
-                            review.setReviewId(reviewRepository.generateReviewId());
+                            // Keep the same ID across retries so the rating is only counted once
+                            if (pendingReviewId == null) {
+                                pendingReviewId = reviewRepository.generateReviewId();
+                            }
+                            review.setReviewId(pendingReviewId);
                             review.setStallId(stallId);
                             review.setStallName(stallName);
                             review.setUserId(currentUser.getUid());
@@ -140,11 +151,12 @@ public class WriteReviewActivity extends AppCompatActivity {
                             review.setText(reviewText);
                             review.setCreatedAt(new Date());
 
-                            // Add review to Firestore
+                            // Add the review and its rating to Firestore in one batch
                             reviewRepository.addReview(review)
-                                    .addOnSuccessListener(aVoid -> {
-                                        // Update stall rating
-                                        updateStallRating();
+                                    .addOnSuccessListener(documentReference -> {
+                                        progressBar.setVisibility(View.GONE);
+                                        Toast.makeText(this, getString(R.string.review_submitted), Toast.LENGTH_SHORT).show();
+                                        finish();
                                     })
                                     .addOnFailureListener(e -> {
                                         progressBar.setVisibility(View.GONE);
@@ -169,21 +181,10 @@ public class WriteReviewActivity extends AppCompatActivity {
                 });
     }
 
-    /**
-     * Updates the stall's rating in Firestore
-     */
-    private void updateStallRating() {
-        stallRepository.updateStallRating(stallId, rating)
-                .addOnSuccessListener(aVoid -> {
-                    progressBar.setVisibility(View.GONE);
-                    Toast.makeText(this, getString(R.string.review_submitted), Toast.LENGTH_SHORT).show();
-                    finish();
-                })
-                .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    btnSubmit.setEnabled(true);
-                    Toast.makeText(this, getString(R.string.error_updating_rating), Toast.LENGTH_SHORT).show();
-                });
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PENDING_REVIEW_ID, pendingReviewId);
     }
 
     @Override
@@ -15,26 +15,40 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
 import com.app.chatori.adapter.StallAdapter;
+import com.app.chatori.model.CategoryDictionary;
 import com.app.chatori.model.Stall;
+import com.app.chatori.repository.StallCatalog;
+import com.app.chatori.repository.StallColumns;
+import com.app.chatori.repository.StallFacets;
+import com.app.chatori.repository.StallPage;
 import com.app.chatori.repository.StallRepository;
+import com.app.chatori.utils.EndlessScrollListener;
 import com.app.chatori.utils.UIUtils;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Activity for searching stalls with filtering options.
  */
 public class SearchActivity extends AppCompatActivity {
 
+    // Number of stalls read per page of the browse feed
+    private static final int PAGE_SIZE = 20;
+    // Maximum number of text search matches
+    private static final int SEARCH_LIMIT = 200;
+
     private EditText etSearch;
     private ImageButton btnBack, btnFilter;
     private RecyclerView rvStalls;
@@ -43,9 +57,17 @@ public class SearchActivity extends AppCompatActivity {
 
     private StallRepository stallRepository;
     private StallAdapter stallAdapter;
-    private List<Stall> allStalls = new ArrayList<>();
     private List<Stall> filteredStalls = new ArrayList<>();
 
+    // Browse feed paging state, used while the search text is empty
+    private DocumentSnapshot feedCursor;
+    private boolean isLoadingPage = false;
+    private boolean hasMorePages = true;
+    // Bumped whenever the feed restarts so pages of an older feed are dropped
+    private int feedGeneration;
+    // Patches stalls shown in the feed when the catalog sees them change
+    private final StallCatalog.ChangeListener catalogChanges = this::applyCatalogChanges;
+
     // Filter variables
     private String selectedDishType = "";
     private String selectedArea = "";
@@ -70,9 +92,20 @@ public class SearchActivity extends AppCompatActivity {
 
         // Set up RecyclerView
         stallAdapter = new StallAdapter(this, filteredStalls);
-        rvStalls.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvStalls.setLayoutManager(layoutManager);
         rvStalls.setAdapter(stallAdapter);
 
+        // Load the next page of the browse feed near the end of the list
+        rvStalls.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+            @Override
+            public void onLoadMore() {
+                if (isBrowsing()) {
+                    loadNextPage();
+                }
+            }
+        });
+
         // Set up click listeners
         btnBack.setOnClickListener(v -> finish());
         btnFilter.setOnClickListener(v -> showFilterDialog());
@@ -106,76 +139,159 @@ public class SearchActivity extends AppCompatActivity {
             }
         }
 
-        // Load stalls
-        loadStalls();
+        // Patch the feed with changes seen by the shared catalog
+        stallRepository.getStallCatalog().addChangeListener(catalogChanges);
+
+        // Load the first page of the browse feed
+        filterStalls(etSearch.getText().toString());
     }
 
     /**
-     * Loads all stalls from Firestore
+     * Updates or drops feed stalls that changed since their page was read
      */
-    private void loadStalls() {
+    private void applyCatalogChanges(StallCatalog.ChangeSet changes) {
+        if (!isBrowsing() || filteredStalls.isEmpty()) return;
+
+        Map<String, Stall> modified = new HashMap<>();
+        for (Stall stall : changes.getModified()) {
+            modified.put(stall.getStallId(), stall);
+        }
+        Set<String> removed = new HashSet<>();
+        for (Stall stall : changes.getRemoved()) {
+            removed.add(stall.getStallId());
+        }
+
+        boolean changed = false;
+        for (int i = filteredStalls.size() - 1; i >= 0; i--) {
+            String stallId = filteredStalls.get(i).getStallId();
+            if (removed.contains(stallId)) {
+                filteredStalls.remove(i);
+                changed = true;
+            } else if (modified.containsKey(stallId)) {
+                filteredStalls.set(i, modified.get(stallId));
+                changed = true;
+            }
+        }
+        if (changed) {
+            showResults();
+        }
+    }
+
+    /**
+     * @return True while the search text is empty and the paged feed is shown
+     */
+    private boolean isBrowsing() {
+        return etSearch.getText().toString().trim().isEmpty();
+    }
+
+    /**
+     * Filters stalls based on search query and selected filters.
+     * Without a query the filters run in Firestore through the paged feed,
+     * with one the query is matched against the local stall mirror.
+     */
+    private void filterStalls(String query) {
+        if (query.trim().isEmpty()) {
+            restartFeed();
+            return;
+        }
+
+        // Leaving the feed drops any page still loading, and a newer query drops this one
+        int generation = ++feedGeneration;
+        isLoadingPage = false;
         progressBar.setVisibility(View.VISIBLE);
 
-        stallRepository.getAllStalls()
-                .addOnSuccessListener(this::processStalls)
+        // Match the query and the filters with the local full-text index
+        StallPage.Filter filter = new StallPage.Filter(selectedDishType, selectedArea, minRating);
+        stallRepository.searchLocal(query, filter, SEARCH_LIMIT)
+                .addOnSuccessListener(matches -> {
+                    if (generation != feedGeneration || isDestroyed()) return;
+
+                    filteredStalls.clear();
+                    filteredStalls.addAll(matches);
+                    
+                    // Sort the filtered stalls
+                    sortStalls();
+                    
+                    progressBar.setVisibility(View.GONE);
+                    showResults();
+                })
                 .addOnFailureListener(e -> {
+                    if (generation != feedGeneration || isDestroyed()) return;
+
                     progressBar.setVisibility(View.GONE);
                     UIUtils.showToast(this, getString(R.string.error_loading_stalls));
                 });
     }
 
     /**
-     * Processes the stalls from Firestore and updates the UI
+     * Clears the list and loads the first page of the feed for the current filters
      */
-    private void processStalls(QuerySnapshot querySnapshot) {
-        allStalls.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Stall stall = document.toObject(Stall.class);
-            if (stall != null) {
-                allStalls.add(stall);
-            }
-        }
+    private void restartFeed() {
+        feedGeneration++;
+        feedCursor = null;
+        hasMorePages = true;
+        isLoadingPage = false;
+        filteredStalls.clear();
+        showResults();
+        loadNextPage();
+    }
 
-        // Apply initial filtering
-        filterStalls(etSearch.getText().toString());
-        
-        progressBar.setVisibility(View.GONE);
+    /**
+     * Loads the next page of the browse feed and appends it to the list
+     */
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMorePages) return;
+        isLoadingPage = true;
+        progressBar.setVisibility(View.VISIBLE);
+
+        int generation = feedGeneration;
+        StallPage.Filter filter = new StallPage.Filter(selectedDishType, selectedArea, minRating);
+        stallRepository.getStallsPage(filter, feedSort(), feedCursor, PAGE_SIZE)
+                .addOnSuccessListener(page -> {
+                    if (generation != feedGeneration || isDestroyed()) return;
+
+                    feedCursor = page.getCursor();
+                    hasMorePages = page.hasMore();
+                    isLoadingPage = false;
+                    progressBar.setVisibility(View.GONE);
+
+                    filteredStalls.addAll(page.getStalls());
+                    showResults();
+
+                    // Pages thinned by client-side filters may not fill the screen
+                    if (hasMorePages && page.getStalls().size() < PAGE_SIZE / 2) {
+                        loadNextPage();
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    if (generation != feedGeneration || isDestroyed()) return;
+
+                    isLoadingPage = false;
+                    progressBar.setVisibility(View.GONE);
+                    UIUtils.showToast(this, getString(R.string.error_loading_stalls));
+                });
     }
 
     /**
-     * Filters stalls based on search query and selected filters
+     * Maps the selected sort option to a feed order
      */
-    private void filterStalls(String query) {
-        filteredStalls.clear();
-        
-        for (Stall stall : allStalls) {
-            boolean matchesSearch = query.isEmpty() || 
-                    stall.getName().toLowerCase().contains(query.toLowerCase()) ||
-                    stall.getArea().toLowerCase().contains(query.toLowerCase()) ||
-                    stall.getDishType().toLowerCase().contains(query.toLowerCase());
-            
-            boolean matchesDishType = selectedDishType.isEmpty() || 
-                    stall.getDishType().equals(selectedDishType);
-            
-            boolean matchesArea = selectedArea.isEmpty() || 
-                    stall.getArea().equals(selectedArea);
-            
-            boolean matchesRating = stall.getRating() >= minRating;
-            
-            if (matchesSearch && matchesDishType && matchesArea && matchesRating) {
-                filteredStalls.add(stall);
-            }
+    private StallPage.Sort feedSort() {
+        if (sortBy.equals("name")) {
+            return StallPage.Sort.NAME;
         }
-        
-        // Sort the filtered stalls
-        sortStalls();
-        
+        // Distance is not a feed order, the feed falls back to rating
+        return StallPage.Sort.RATING;
+    }
+
+    /**
+     * Shows the current results and the no results message
+     */
+    private void showResults() {
         // Update UI
         stallAdapter.updateStalls(filteredStalls);
         
-        // Show/hide no results message
-        if (filteredStalls.isEmpty()) {
+        // Show/hide no results message, but not while the first page is loading
+        if (filteredStalls.isEmpty() && !isLoadingPage) {
             tvNoResults.setVisibility(View.VISIBLE);
         } else {
             tvNoResults.setVisibility(View.GONE);
@@ -197,9 +313,13 @@ public class SearchActivity extends AppCompatActivity {
     }
 
     /**
-     * Shows the filter dialog
+     * Shows the filter dialog right away. Counts come from the catalog, which
+     * is not loaded just for this: without it every option is shown without
+     * counts, and if a load is already in flight the counts are added when it finishes.
      */
     private void showFilterDialog() {
+        StallCatalog catalog = stallRepository.getStallCatalog();
+        StallFacets facets = catalog.isLoaded() ? catalog.getFacets() : null;
         BottomSheetDialog dialog = new BottomSheetDialog(this);
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_filter, null);
         dialog.setContentView(dialogView);
@@ -212,39 +332,47 @@ public class SearchActivity extends AppCompatActivity {
         MaterialButton btnApply = dialogView.findViewById(R.id.btn_apply);
         MaterialButton btnClear = dialogView.findViewById(R.id.btn_clear);
 
-        // Populate dish types
-        List<String> dishTypes = new ArrayList<>();
-        for (Stall stall : allStalls) {
-            if (!dishTypes.contains(stall.getDishType())) {
-                dishTypes.add(stall.getDishType());
-                
-                Chip chip = new Chip(this);
-                chip.setText(stall.getDishType());
-                chip.setCheckable(true);
-                chip.setChecked(stall.getDishType().equals(selectedDishType));
-                chipGroupDishType.addView(chip);
+        StallFacets.Counts unfiltered = facets != null
+                ? facets.count(StallColumns.ANY, StallColumns.ANY, 0) : null;
+
+        // One chip per dish type and area that has stalls, or every known one without counts
+        int selectedDishTypeId = selectedDishType.isEmpty()
+                ? CategoryDictionary.NONE : CategoryDictionary.DISH_TYPES.find(selectedDishType);
+        List<String> dishTypes = CategoryDictionary.DISH_TYPES.getNames();
+        for (int id = 0; id < dishTypes.size(); id++) {
+            if (unfiltered == null || unfiltered.getDishTypeCount(id) > 0 || id == selectedDishTypeId) {
+                chipGroupDishType.addView(categoryChip(dishTypes.get(id), id == selectedDishTypeId));
             }
         }
 
-        // Populate areas
-        List<String> areas = new ArrayList<>();
-        for (Stall stall : allStalls) {
-            if (!areas.contains(stall.getArea())) {
-                areas.add(stall.getArea());
-                
-                Chip chip = new Chip(this);
-                chip.setText(stall.getArea());
-                chip.setCheckable(true);
-                chip.setChecked(stall.getArea().equals(selectedArea));
-                chipGroupArea.addView(chip);
+        int selectedAreaId = selectedArea.isEmpty()
+                ? CategoryDictionary.NONE : CategoryDictionary.AREAS.find(selectedArea);
+        List<String> areas = CategoryDictionary.AREAS.getNames();
+        for (int id = 0; id < areas.size(); id++) {
+            if (unfiltered == null || unfiltered.getAreaCount(id) > 0 || id == selectedAreaId) {
+                chipGroupArea.addView(categoryChip(areas.get(id), id == selectedAreaId));
             }
         }
 
         // Set up rating chips
+        List<CharSequence> ratingLabels = new ArrayList<>();
         for (int i = 0; i < chipGroupRating.getChildCount(); i++) {
             Chip chip = (Chip) chipGroupRating.getChildAt(i);
             float rating = Float.parseFloat(chip.getTag().toString());
             chip.setChecked(rating == minRating);
+            ratingLabels.add(chip.getText());
+        }
+
+        // Show result counts next to each chip, now or once a running catalog load finishes
+        if (facets != null) {
+            trackFacetCounts(facets, chipGroupDishType, chipGroupArea, chipGroupRating, ratingLabels);
+        } else if (catalog.getLoadTask() != null) {
+            catalog.getLoadTask().addOnSuccessListener(this, stalls -> {
+                if (dialog.isShowing()) {
+                    trackFacetCounts(catalog.getFacets(),
+                            chipGroupDishType, chipGroupArea, chipGroupRating, ratingLabels);
+                }
+            });
         }
 
         // Set up sort chips
@@ -256,15 +384,9 @@ public class SearchActivity extends AppCompatActivity {
 
         // Set up click listeners
         btnApply.setOnClickListener(v -> {
-            // Get selected dish type
-            int dishTypeId = chipGroupDishType.getCheckedChipId();
-            selectedDishType = dishTypeId != View.NO_ID ? 
-                    ((Chip) dialogView.findViewById(dishTypeId)).getText().toString() : "";
-
-            // Get selected area
-            int areaId = chipGroupArea.getCheckedChipId();
-            selectedArea = areaId != View.NO_ID ? 
-                    ((Chip) dialogView.findViewById(areaId)).getText().toString() : "";
+            // Get selected dish type and area, the chip text also holds a count
+            selectedDishType = checkedTag(chipGroupDishType, "");
+            selectedArea = checkedTag(chipGroupArea, "");
 
             // Get selected rating
             int ratingId = chipGroupRating.getCheckedChipId();
@@ -311,4 +433,78 @@ public class SearchActivity extends AppCompatActivity {
 
         dialog.show();
     }
+
+    /**
+     * Creates a checkable chip for a dish type or area, tagged with its value
+     */
+    private Chip categoryChip(String value, boolean checked) {
+        Chip chip = new Chip(this);
+        chip.setTag(value);
+        chip.setText(value);
+        chip.setCheckable(true);
+        chip.setChecked(checked);
+        return chip;
+    }
+
+    /**
+     * Shows the facet counts on the filter chips and recounts them as the selection changes
+     */
+    private void trackFacetCounts(StallFacets facets, ChipGroup dishTypeGroup, ChipGroup areaGroup,
+                                  ChipGroup ratingGroup, List<CharSequence> ratingLabels) {
+        Runnable updateCounts = () -> showFacetCounts(facets,
+                dishTypeGroup, areaGroup, ratingGroup, ratingLabels);
+        updateCounts.run();
+        dishTypeGroup.setOnCheckedStateChangeListener((group, checkedIds) -> updateCounts.run());
+        areaGroup.setOnCheckedStateChangeListener((group, checkedIds) -> updateCounts.run());
+        ratingGroup.setOnCheckedStateChangeListener((group, checkedIds) -> updateCounts.run());
+    }
+
+    /**
+     * Labels each filter chip with the number of stalls picking it would show,
+     * given what is selected in the other two groups
+     */
+    private void showFacetCounts(StallFacets facets, ChipGroup dishTypeGroup, ChipGroup areaGroup,
+                                 ChipGroup ratingGroup, List<CharSequence> ratingLabels) {
+        String dishType = checkedTag(dishTypeGroup, "");
+        String area = checkedTag(areaGroup, "");
+        float rating = Float.parseFloat(checkedTag(ratingGroup, "0"));
+        StallFacets.Counts counts = facets.count(
+                dishType.isEmpty() ? StallColumns.ANY : CategoryDictionary.DISH_TYPES.find(dishType),
+                area.isEmpty() ? StallColumns.ANY : CategoryDictionary.AREAS.find(area),
+                rating);
+
+        for (int i = 0; i < dishTypeGroup.getChildCount(); i++) {
+            Chip chip = (Chip) dishTypeGroup.getChildAt(i);
+            String value = chip.getTag().toString();
+            int count = counts.getDishTypeCount(CategoryDictionary.DISH_TYPES.find(value));
+            chip.setText(getString(R.string.facet_count, value, count));
+        }
+        for (int i = 0; i < areaGroup.getChildCount(); i++) {
+            Chip chip = (Chip) areaGroup.getChildAt(i);
+            String value = chip.getTag().toString();
+            int count = counts.getAreaCount(CategoryDictionary.AREAS.find(value));
+            chip.setText(getString(R.string.facet_count, value, count));
+        }
+        for (int i = 0; i < ratingGroup.getChildCount(); i++) {
+            Chip chip = (Chip) ratingGroup.getChildAt(i);
+            int count = counts.getRatingCount(Float.parseFloat(chip.getTag().toString()));
+            chip.setText(getString(R.string.facet_count, ratingLabels.get(i), count));
+        }
+    }
+
+    /**
+     * @return Tag of the checked chip in a group, or the fallback if none is checked
+     */
+    private static String checkedTag(ChipGroup group, String fallback) {
+        int checkedId = group.getCheckedChipId();
+        if (checkedId == View.NO_ID) return fallback;
+        Object tag = group.findViewById(checkedId).getTag();
+        return tag != null ? tag.toString() : fallback;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        stallRepository.getStallCatalog().removeChangeListener(catalogChanges);
+    }
 }
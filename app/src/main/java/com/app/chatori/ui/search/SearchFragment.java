@@ -22,6 +22,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.app.chatori.R;
 import com.app.chatori.adapter.StallAdapter;
+import com.app.chatori.model.CategoryDictionary;
 import com.app.chatori.model.Stall;
 import com.app.chatori.repository.DishRepository;
 import com.app.chatori.repository.StallRepository;
@@ -29,11 +30,8 @@ import com.app.chatori.utils.LocationUtils;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -41,6 +39,8 @@ import java.util.List;
  * Fragment for searching and filtering stalls.
  */
 public class SearchFragment extends Fragment {
+    // Wait for a pause in typing before searching
+    private static final long SEARCH_DEBOUNCE_MS = 150;
 
     private EditText etSearch;
     private ImageView ivClearSearch;
@@ -55,6 +55,7 @@ public class SearchFragment extends Fragment {
     private StallRepository stallRepository;
     private DishRepository dishRepository;
     private StallAdapter stallAdapter;
+    private StallSearchPipeline searchPipeline;
     private List<Stall> allStalls = new ArrayList<>();
     private List<Stall> filteredStalls = new ArrayList<>();
     private Location currentLocation;
@@ -73,6 +74,9 @@ public class SearchFragment extends Fragment {
         // Initialize repositories
         stallRepository = StallRepository.getInstance();
         dishRepository = DishRepository.getInstance();
+        if (searchPipeline == null) {
+            searchPipeline = new StallSearchPipeline(stallRepository.getStallCatalog(), this::showResults);
+        }
 
         // Initialize views
         etSearch = view.findViewById(R.id.et_search);
@@ -106,6 +110,15 @@ public class SearchFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // Observe the shared stall catalog
+        stallRepository.getStallCatalog().getStalls()
+                .observe(getViewLifecycleOwner(), this::processStalls);
+    }
+
     /**
      * Sets up the RecyclerView for stalls
      */
@@ -128,7 +141,7 @@ public class SearchFragment extends Fragment {
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 String query = s.toString().trim().toLowerCase();
                 ivClearSearch.setVisibility(query.isEmpty() ? View.GONE : View.VISIBLE);
-                filterStalls();
+                scheduleSearch(SEARCH_DEBOUNCE_MS);
             }
 
             @Override
@@ -183,13 +196,12 @@ public class SearchFragment extends Fragment {
     }
 
     /**
-     * Loads all stalls from Firestore
+     * Loads the shared stall catalog if it is not loaded yet
      */
     private void loadAllStalls() {
         progressBar.setVisibility(View.VISIBLE);
 
-        stallRepository.getAllStalls()
-                .addOnSuccessListener(this::processStalls)
+        stallRepository.getStallCatalog().load()
                 .addOnFailureListener(e -> {
                     progressBar.setVisibility(View.GONE);
                     Toast.makeText(getContext(), getString(R.string.error_loading_stalls), Toast.LENGTH_SHORT).show();
@@ -197,17 +209,10 @@ public class SearchFragment extends Fragment {
     }
 
     /**
-     * Processes the stalls from Firestore and updates the UI
+     * Processes the catalog snapshot and updates the UI
      */
-    private void processStalls(QuerySnapshot querySnapshot) {
-        allStalls.clear();
-        
-        for (DocumentSnapshot document : querySnapshot) {
-            Stall stall = document.toObject(Stall.class);
-            if (stall != null) {
-                allStalls.add(stall);
-            }
-        }
+    private void processStalls(List<Stall> stalls) {
+        allStalls = stalls;
 
         filterStalls();
         progressBar.setVisibility(View.GONE);
@@ -217,40 +222,37 @@ public class SearchFragment extends Fragment {
      * Filters stalls based on search query and filters
      */
     private void filterStalls() {
+        scheduleSearch(0);
+    }
+
+    /**
+     * Hands the current query and filters to the background search pipeline
+     * @param delayMs Debounce delay in milliseconds
+     */
+    private void scheduleSearch(long delayMs) {
         if (allStalls.isEmpty()) return;
 
         String query = etSearch.getText().toString().trim().toLowerCase();
-        
-        // Filter by search query, dish type, area, and rating
-        filteredStalls.clear();
-        for (Stall stall : allStalls) {
-            boolean matchesQuery = query.isEmpty() ||
-                    stall.getName().toLowerCase().contains(query) ||
-                    stall.getDishType().toLowerCase().contains(query) ||
-                    stall.getArea().toLowerCase().contains(query);
-            
-            boolean matchesDishType = currentDishType.isEmpty() ||
-                    stall.getDishType().equalsIgnoreCase(currentDishType);
-            
-            boolean matchesArea = currentArea.isEmpty() ||
-                    stall.getArea().equalsIgnoreCase(currentArea);
-            
-            boolean matchesRating = stall.getRating() >= minRating;
-            
-            if (matchesQuery && matchesDishType && matchesArea && matchesRating) {
-                filteredStalls.add(stall);
-            }
-        }
-        
-        // Sort by distance if needed
+        // Picking a rating asks for the best rated stalls, so it also orders text matches by rating
+        StallSearchPipeline.Sort sort;
         if (sortByDistance && currentLocation != null) {
-            filteredStalls = LocationUtils.sortStallsByDistance(filteredStalls, currentLocation);
+            sort = StallSearchPipeline.Sort.DISTANCE;
+        } else if (minRating > 0) {
+            sort = StallSearchPipeline.Sort.RATING;
         } else {
-            // Otherwise sort by rating
-            Collections.sort(filteredStalls, (s1, s2) -> Float.compare(s2.getRating(), s1.getRating()));
+            sort = StallSearchPipeline.Sort.RELEVANCE;
         }
-        
-        // Update UI
+        searchPipeline.submit(new StallSearchPipeline.Request(
+                allStalls, query, currentDishType, currentArea, minRating, sort, currentLocation), delayMs);
+    }
+
+    /**
+     * Shows the results of the latest search
+     */
+    private void showResults(List<Stall> results) {
+        if (getView() == null) return;
+
+        filteredStalls = results;
         stallAdapter.updateStalls(filteredStalls);
         updateEmptyState();
     }
@@ -272,9 +274,9 @@ public class SearchFragment extends Fragment {
      * Shows dish type filter options
      */
     private void showDishTypeFilter() {
-        // For simplicity, we'll just use a few hard-coded dish types
-        // In a real app, you would fetch these from the DishRepository
-        String[] dishTypes = {"Chaat", "Momos", "Golgappe", "Tikki", "Rolls", "Biryani", "Chinese"};
+        // Dish types seen in the catalog, or a few common ones before it loads
+        String[] dishTypes = categoryOptions(CategoryDictionary.DISH_TYPES,
+                "Chaat", "Momos", "Golgappe", "Tikki", "Rolls", "Biryani", "Chinese");
         
         showFilterChips(dishTypes, "dish");
     }
@@ -283,13 +285,23 @@ public class SearchFragment extends Fragment {
      * Shows area filter options
      */
     private void showAreaFilter() {
-        // For simplicity, we'll just use a few hard-coded areas
-        // In a real app, you would extract these from the stalls
-        String[] areas = {"Karol Bagh", "Connaught Place", "Chandni Chowk", "Lajpat Nagar", "Saket", "Hauz Khas"};
+        // Areas seen in the catalog, or a few common ones before it loads
+        String[] areas = categoryOptions(CategoryDictionary.AREAS,
+                "Karol Bagh", "Connaught Place", "Chandni Chowk", "Lajpat Nagar", "Saket", "Hauz Khas");
         
         showFilterChips(areas, "area");
     }
 
+    /**
+     * Gets the filter options for a category
+     * @param dictionary Values of the catalog's stalls
+     * @param defaults Options to show until the catalog is loaded
+     */
+    private static String[] categoryOptions(CategoryDictionary dictionary, String... defaults) {
+        List<String> names = dictionary.getLiveNames();
+        return names.isEmpty() ? defaults : names.toArray(new String[0]);
+    }
+
     /**
      * Shows rating filter options
      */
@@ -382,6 +394,18 @@ public class SearchFragment extends Fragment {
         filterStalls();
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        searchPipeline.cancel();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        searchPipeline.shutdown();
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
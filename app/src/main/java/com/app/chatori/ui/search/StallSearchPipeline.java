@@ -0,0 +1,242 @@
+package com.app.chatori.ui.search;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.app.chatori.model.Stall;
+import com.app.chatori.repository.StallCatalog;
+import com.app.chatori.repository.StallColumns;
+import com.app.chatori.repository.StallFuzzyIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs stall searches off the main thread.
+ * Input is debounced, a newer request cancels any older one still pending or
+ * running, and a query that only extends the previous one narrows the
+ * previous prefix and fuzzy matches instead of searching the whole catalog again.
+ */
+public class StallSearchPipeline {
+
+    /**
+     * Receives the results of the latest request on the main thread
+     */
+    public interface Callback {
+        void onResults(List<Stall> results);
+    }
+
+    /**
+     * Order of the results
+     */
+    public enum Sort {
+        // Best text match first, highest rated first without a query
+        RELEVANCE,
+        // Highest rated first, text matches keep their relevance order between equal ratings
+        RATING,
+        // Nearest first
+        DISTANCE
+    }
+
+    /**
+     * Immutable description of one search
+     */
+    public static class Request {
+        final List<Stall> stalls;
+        final String query;
+        final String dishType;
+        final String area;
+        final float minRating;
+        final Sort sort;
+        final Location sortLocation;
+
+        /**
+         * @param stalls Catalog snapshot to search
+         * @param query Search text, empty for all stalls
+         * @param dishType Dish type filter, empty for any
+         * @param area Area filter, empty for any
+         * @param minRating Minimum rating
+         * @param sort Order of the results
+         * @param sortLocation Location to measure from with Sort.DISTANCE, otherwise null
+         */
+        public Request(List<Stall> stalls, String query, String dishType, String area,
+                       float minRating, Sort sort, Location sortLocation) {
+            this.stalls = stalls;
+            this.query = query;
+            this.dishType = dishType;
+            this.area = area;
+            this.minRating = minRating;
+            this.sort = sort;
+            this.sortLocation = sortLocation;
+        }
+    }
+
+    private final StallCatalog catalog;
+    private final Callback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Bumped for every request, older runs stop when they see a newer value
+    private volatile int generation;
+    private Runnable pendingSubmit;
+    private Future<?> runningSearch;
+
+    // Last prefix and fuzzy matches, only touched on the executor thread
+    private List<Stall> lastStalls;
+    private String lastQuery;
+    private List<Stall> lastPrefixMatches;
+    private List<Stall> lastFuzzyMatches;
+    // Column store of the last snapshot searched, only touched on the executor thread
+    private List<Stall> lastColumnsSource;
+    private StallColumns lastColumns;
+
+    public StallSearchPipeline(StallCatalog catalog, Callback callback) {
+        this.catalog = catalog;
+        this.callback = callback;
+    }
+
+    /**
+     * Schedules a search, replacing any request that has not finished yet.
+     * Call from the main thread.
+     * @param request Search to run
+     * @param delayMs Debounce delay, 0 to start right away
+     */
+    public void submit(Request request, long delayMs) {
+        final int requestGeneration = ++generation;
+        cancelPending();
+
+        pendingSubmit = () -> {
+            pendingSubmit = null;
+            runningSearch = executor.submit(() -> run(request, requestGeneration));
+        };
+        if (delayMs > 0) {
+            mainHandler.postDelayed(pendingSubmit, delayMs);
+        } else {
+            pendingSubmit.run();
+        }
+    }
+
+    /**
+     * Drops any pending or running request without delivering results
+     */
+    public void cancel() {
+        generation++;
+        cancelPending();
+    }
+
+    /**
+     * Cancels all work and stops the background thread
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void cancelPending() {
+        if (pendingSubmit != null) {
+            mainHandler.removeCallbacks(pendingSubmit);
+            pendingSubmit = null;
+        }
+        if (runningSearch != null) {
+            runningSearch.cancel(false);
+            runningSearch = null;
+        }
+    }
+
+    private boolean isStale(int requestGeneration) {
+        return requestGeneration != generation;
+    }
+
+    /**
+     * Matches, filters and sorts on the executor thread
+     */
+    private void run(Request request, int requestGeneration) {
+        List<Stall> candidates = match(request);
+        if (isStale(requestGeneration)) return;
+
+        // Filter and sort over the column store, then map the rows back to stalls
+        StallColumns columns = columnsFor(request.stalls);
+        int[] rows = candidates == request.stalls ? columns.allRows() : columns.rowsOf(candidates);
+        rows = columns.filter(rows, request.dishType, request.area, request.minRating);
+        if (isStale(requestGeneration)) return;
+
+        if (request.sort == Sort.DISTANCE && request.sortLocation != null) {
+            rows = columns.sortByDistance(rows,
+                    request.sortLocation.getLatitude(), request.sortLocation.getLongitude());
+        } else if (request.sort == Sort.RATING || request.query.isEmpty()) {
+            // The sort is stable, so equal ratings keep their relevance order
+            rows = columns.sortByRating(rows);
+        }
+
+        final List<Stall> finalResults = columns.toStalls(rows);
+        mainHandler.post(() -> {
+            if (!isStale(requestGeneration)) {
+                callback.onResults(finalResults);
+            }
+        });
+    }
+
+    /**
+     * Gets the column store of a catalog snapshot, building it once per snapshot
+     */
+    private StallColumns columnsFor(List<Stall> stalls) {
+        if (stalls != lastColumnsSource) {
+            lastColumns = new StallColumns(stalls);
+            lastColumnsSource = stalls;
+        }
+        return lastColumns;
+    }
+
+    /**
+     * Finds the stalls matching the query text.
+     * Fuzzy matches come first in relevance order, followed by any remaining
+     * exact prefix matches the fuzzy search cut off.
+     */
+    private List<Stall> match(Request request) {
+        if (request.query.isEmpty()) {
+            lastQuery = null;
+            lastPrefixMatches = null;
+            lastFuzzyMatches = null;
+            return request.stalls;
+        }
+
+        boolean sameSnapshot = request.stalls == lastStalls && lastQuery != null;
+        List<Stall> prefixMatches;
+        if (sameSnapshot && request.query.startsWith(lastQuery)) {
+            prefixMatches = catalog.narrow(lastPrefixMatches, request.query);
+        } else {
+            prefixMatches = catalog.search(request.query);
+        }
+
+        // Earlier fuzzy matches can only be narrowed if none were cut off by the result limit
+        List<Stall> fuzzyMatches;
+        if (sameSnapshot && lastFuzzyMatches.size() < StallFuzzyIndex.DEFAULT_LIMIT
+                && StallFuzzyIndex.extendsQuery(lastQuery, request.query)) {
+            fuzzyMatches = catalog.fuzzyNarrow(lastFuzzyMatches, request.query);
+        } else {
+            fuzzyMatches = catalog.fuzzySearch(request.query);
+        }
+        lastStalls = request.stalls;
+        lastQuery = request.query;
+        lastPrefixMatches = prefixMatches;
+        lastFuzzyMatches = fuzzyMatches;
+
+        Set<Stall> merged = new LinkedHashSet<>(fuzzyMatches);
+        List<Stall> remaining = new ArrayList<>();
+        for (Stall stall : prefixMatches) {
+            if (!merged.contains(stall)) {
+                remaining.add(stall);
+            }
+        }
+        Collections.sort(remaining, (s1, s2) -> Float.compare(s2.getRating(), s1.getRating()));
+        merged.addAll(remaining);
+        return new ArrayList<>(merged);
+    }
+}
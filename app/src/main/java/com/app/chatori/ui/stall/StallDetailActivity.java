@@ -30,6 +30,7 @@ import com.app.chatori.model.Dish;
 import com.app.chatori.model.Review;
 import com.app.chatori.model.Stall;
 import com.app.chatori.model.User;
+import com.app.chatori.model.UserCodec;
 import com.app.chatori.repository.DishRepository;
 import com.app.chatori.repository.ReviewRepository;
 import com.app.chatori.repository.StallRepository;
@@ -45,6 +46,7 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -280,62 +282,8 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
                 stallRepository = StallRepository.getInstance();
             }
 
-            // Log the stall ID we're trying to load for debugging
-            System.out.println("DEBUG: Attempting to load stall with ID: " + stallId);
-            
-            // First try to get all stalls to see what's available
-            stallRepository.getAllStalls()
-                .addOnSuccessListener(querySnapshot -> {
-                    // Check if we have any stalls at all
-                    if (querySnapshot == null || querySnapshot.isEmpty()) {
-                        System.out.println("DEBUG: No stalls found in database");
-                        showErrorAndFinish("No stalls available. Please add some stalls first.");
-                        return;
-                    }
-                    
-                    // Check if the requested stall exists
-                    boolean stallExists = false;
-                    DocumentSnapshot targetStallDoc = null;
-                    DocumentSnapshot firstStallDoc = null;
-                    
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        // Save the first stall as a fallback
-                        if (firstStallDoc == null) {
-                            firstStallDoc = doc;
-                        }
-                        
-                        // Check if this is the stall we're looking for
-                        Stall s = doc.toObject(Stall.class);
-                        if (s != null && s.getStallId() != null && s.getStallId().equals(stallId)) {
-                            stallExists = true;
-                            targetStallDoc = doc;
-                            break;
-                        }
-                    }
-                    
-                    if (stallExists && targetStallDoc != null) {
-                        // Load the requested stall
-                        System.out.println("DEBUG: Found requested stall with ID: " + stallId);
-                        loadStallFromDocument(targetStallDoc);
-                    } else if (firstStallDoc != null) {
-                        // Load the first stall as a fallback
-                        Stall firstStall = firstStallDoc.toObject(Stall.class);
-                        if (firstStall != null) {
-                            System.out.println("DEBUG: Requested stall not found. Loading first stall: " + firstStall.getStallId());
-                            Toast.makeText(this, "Requested stall not found. Showing another stall instead.", Toast.LENGTH_SHORT).show();
-                            stallId = firstStall.getStallId(); // Update stallId to match the loaded stall
-                            loadStallFromDocument(firstStallDoc);
-                        } else {
-                            showErrorAndFinish("Error loading stall data");
-                        }
-                    } else {
-                        showErrorAndFinish("No valid stalls found");
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("DEBUG: Error loading stalls: " + e.getMessage());
-                    showErrorAndFinish("Error loading stalls: " + e.getMessage());
-                });
+            // Look the stall up by its ID
+            loadStallById(stallId);
         } catch (Exception e) {
             e.printStackTrace();
             if (progressBar != null) {
@@ -346,42 +294,6 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
         }
     }
     
-    /**
-     * Loads a stall from a document snapshot
-     * @param doc The document snapshot containing the stall data
-     */
-    private void loadStallFromDocument(DocumentSnapshot doc) {
-        try {
-            stall = doc.toObject(Stall.class);
-            if (stall != null) {
-                // Ensure the stall ID is set correctly
-                if (stall.getStallId() == null) {
-                    stall.setStallId(doc.getId());
-                }
-                
-                // Print stall data for debugging
-                System.out.println("DEBUG: Loaded stall name: " + stall.getName());
-                System.out.println("DEBUG: Loaded stall dish type: " + stall.getDishType());
-                System.out.println("DEBUG: Loaded stall area: " + stall.getArea());
-                
-                // Update UI and load related data
-                updateUI();
-                loadDishes();
-                loadReviews();
-                checkIfFavorite();
-            } else {
-                showErrorAndFinish("Error: Could not load stall data");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            showErrorAndFinish("Error processing stall data: " + e.getMessage());
-        } finally {
-            if (progressBar != null) {
-                progressBar.setVisibility(View.GONE);
-            }
-        }
-    }
-    
     /**
      * Shows an error message and finishes the activity
      * @param errorMessage The error message to show
@@ -399,35 +311,19 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
      * @param id The stall ID to load
      */
     private void loadStallById(String id) {
-        stallRepository.getStallById(id)
-            .addOnSuccessListener(documentSnapshot -> {
+        stallRepository.getStall(id)
+            .addOnSuccessListener(loadedStall -> {
                 try {
-                    if (documentSnapshot != null && documentSnapshot.exists()) {
-                        stall = documentSnapshot.toObject(Stall.class);
-                        if (stall != null) {
-                            // Ensure the stall ID is set correctly
-                            if (stall.getStallId() == null) {
-                                stall.setStallId(id);
-                            }
-                            
-                            // Always validate and fix stall data, don't fail if invalid
-                            StallDataHelper.validateAndFixStall(stall);
-                            
-                            // Update UI and load related data
-                            updateUI();
-                            loadDishes();
-                            loadReviews();
-                            checkIfFavorite();
-                        } else {
-                            // Create a minimal valid stall to prevent crashes
-                            stall = new Stall();
-                            stall.setStallId(id);
-                            stall.setName("Stall " + id);
-                            StallDataHelper.validateAndFixStall(stall);
-                            
-                            updateUI();
-                            Toast.makeText(this, "Limited stall data available", Toast.LENGTH_SHORT).show();
-                        }
+                    if (loadedStall != null) {
+                        // Shared with the catalog and other screens, so it is only
+                        // read here, through the StallDataHelper.getSafe* accessors
+                        stall = loadedStall;
+                        
+                        // Update UI and load related data
+                        updateUI();
+                        loadDishes();
+                        loadReviews();
+                        checkIfFavorite();
                     } else {
                         // Create a minimal valid stall to prevent crashes
                         stall = new Stall();
@@ -552,17 +448,7 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
                         currentLocation.getLatitude(), currentLocation.getLongitude(),
                         stall.getLocation().getLatitude(), stall.getLocation().getLongitude());
                 
-                String distanceText;
-                if (distance < 1) {
-                    // Convert to meters
-                    int meters = (int) (distance * 1000);
-                    distanceText = meters + " m";
-                } else {
-                    // Round to one decimal place
-                    distanceText = String.format("%.1f km", distance);
-                }
-                
-                tvDistance.setText(distanceText);
+                tvDistance.setText(LocationUtils.formatDistance(distance));
                 tvDistance.setVisibility(View.VISIBLE);
             } else {
                 tvDistance.setVisibility(View.GONE);
@@ -599,16 +485,11 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
     private void loadDishes() {
         try {
             if (dishRepository != null && stallId != null) {
-                dishRepository.getDishesByStallId(stallId)
-                        .addOnSuccessListener(querySnapshot -> {
+                dishRepository.getDishes(stallId)
+                        .addOnSuccessListener(loadedDishes -> {
                             try {
                                 dishes.clear();
-                                for (DocumentSnapshot document : querySnapshot) {
-                                    Dish dish = document.toObject(Dish.class);
-                                    if (dish != null) {
-                                        dishes.add(dish);
-                                    }
-                                }
+                                dishes.addAll(loadedDishes);
                                 
                                 // Set up dishes RecyclerView
                                 if (!dishes.isEmpty()) {
@@ -643,16 +524,11 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
     private void loadReviews() {
         try {
             if (reviewRepository != null && stallId != null) {
-                reviewRepository.getReviewsByStallId(stallId, 3)
-                        .addOnSuccessListener(querySnapshot -> {
+                reviewRepository.getRecentReviews(stallId, 3)
+                        .addOnSuccessListener(loadedReviews -> {
                             try {
                                 reviews.clear();
-                                for (DocumentSnapshot document : querySnapshot) {
-                                    Review review = document.toObject(Review.class);
-                                    if (review != null) {
-                                        reviews.add(review);
-                                    }
-                                }
+                                reviews.addAll(loadedReviews);
                                 
                                 // Set up reviews RecyclerView
                                 if (!reviews.isEmpty()) {
@@ -708,11 +584,19 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
         try {
             FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
             if (currentUser != null && userRepository != null) {
+                // Show the cached state right away, the read below confirms it
+                User cachedUser = userRepository.getCachedUser(currentUser.getUid());
+                if (cachedUser != null) {
+                    isFavorite = cachedUser.isFavorite(stallId);
+                    updateFavoriteButton();
+                }
+
                 userRepository.getUserById(currentUser.getUid())
                         .addOnSuccessListener(documentSnapshot -> {
                             try {
                                 if (documentSnapshot.exists()) {
-                                    User user = documentSnapshot.toObject(User.class);
+                                    User user = UserCodec.decode(documentSnapshot);
+                                    userRepository.cacheUser(user);
                                     if (user != null && user.getFavoriteStalls() != null) {
                                         isFavorite = user.getFavoriteStalls().contains(stallId);
                                         updateFavoriteButton();
@@ -736,31 +620,23 @@ public class StallDetailActivity extends AppCompatActivity implements OnMapReady
         try {
             FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
             if (currentUser != null) {
-                if (isFavorite) {
-                    // Remove from favorites
-                    userRepository.removeFromFavorites(currentUser.getUid(), stallId)
-                            .addOnSuccessListener(aVoid -> {
-                                isFavorite = false;
-                                updateFavoriteButton();
-                                Toast.makeText(this, getString(R.string.removed_from_favorites), Toast.LENGTH_SHORT).show();
-                            })
-                            .addOnFailureListener(e -> {
-                                e.printStackTrace();
-                                Toast.makeText(this, getString(R.string.error_updating_favorites), Toast.LENGTH_SHORT).show();
-                            });
-                } else {
-                    // Add to favoriteshttps://meet.google.com/wpj-rddm-bji
-                    userRepository.addToFavorites(currentUser.getUid(), stallId)
-                            .addOnSuccessListener(aVoid -> {
-                                isFavorite = true;
-                                updateFavoriteButton();
-                                Toast.makeText(this, getString(R.string.added_to_favorites), Toast.LENGTH_SHORT).show();
-                            })
-                            .addOnFailureListener(e -> {
-                                e.printStackTrace();
-                                Toast.makeText(this, getString(R.string.error_updating_favorites), Toast.LENGTH_SHORT).show();
-                            });
-                }
+                // Flip the button right away and roll it back if the write fails
+                boolean wasFavorite = isFavorite;
+                isFavorite = !wasFavorite;
+                updateFavoriteButton();
+
+                Task<Void> write = wasFavorite
+                        ? userRepository.removeFromFavorites(currentUser.getUid(), stallId)
+                        : userRepository.addToFavorites(currentUser.getUid(), stallId);
+                write.addOnSuccessListener(aVoid -> Toast.makeText(this,
+                                getString(wasFavorite ? R.string.removed_from_favorites : R.string.added_to_favorites),
+                                Toast.LENGTH_SHORT).show())
+                        .addOnFailureListener(e -> {
+                            e.printStackTrace();
+                            isFavorite = wasFavorite;
+                            updateFavoriteButton();
+                            Toast.makeText(this, getString(R.string.error_updating_favorites), Toast.LENGTH_SHORT).show();
+                        });
             } else {
                 Toast.makeText(this, getString(R.string.error_login_required), Toast.LENGTH_SHORT).show();
             }
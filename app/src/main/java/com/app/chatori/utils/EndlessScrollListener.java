@@ -0,0 +1,45 @@
+package com.app.chatori.utils;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Scroll listener that asks for the next page while the user is still a few
+ * rows away from the end of the list, so the page is usually there before
+ * the end is reached.
+ */
+public abstract class EndlessScrollListener extends RecyclerView.OnScrollListener {
+    // Default number of rows left before the next page is requested
+    public static final int DEFAULT_PREFETCH_DISTANCE = 5;
+
+    private final LinearLayoutManager layoutManager;
+    private final int prefetchDistance;
+
+    public EndlessScrollListener(LinearLayoutManager layoutManager) {
+        this(layoutManager, DEFAULT_PREFETCH_DISTANCE);
+    }
+
+    public EndlessScrollListener(LinearLayoutManager layoutManager, int prefetchDistance) {
+        this.layoutManager = layoutManager;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        // Only react to scrolling towards the end
+        if (dy <= 0) return;
+
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= layoutManager.getItemCount() - 1 - prefetchDistance) {
+            onLoadMore();
+        }
+    }
+
+    /**
+     * Called when the next page should be loaded.
+     * May be called repeatedly while scrolling, so implementations should
+     * ignore calls while a page is already loading or when there are no more pages.
+     */
+    public abstract void onLoadMore();
+}
@@ -0,0 +1,170 @@
+package com.app.chatori.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility class for encoding locations as geohashes and for building the
+ * geohash ranges that cover a circular search area or a map viewport.
+ */
+public class GeoHashUtils {
+    // Precision stored on each stall (about 5 m x 5 m cells)
+    public static final int DEFAULT_PRECISION = 9;
+    // Most range queries a radius search may issue, as in a 3 x 3 block of cells
+    public static final int MAX_RADIUS_CELLS = 9;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double KM_PER_DEGREE_LAT = 110.574;
+    private static final double KM_PER_DEGREE_LON = 111.320;
+
+    /**
+     * Encodes a location as a geohash
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @param precision Number of characters in the geohash
+     * @return Geohash string
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+
+        return hash.toString();
+    }
+
+    /**
+     * Encodes a location as a geohash with the default precision
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @return Geohash string
+     */
+    public static String encode(double latitude, double longitude) {
+        return encode(latitude, longitude, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Builds the geohash prefix ranges that together cover a circle.
+     * The precision is picked from the cell height and width separately, as
+     * the finest one that covers the circle's bounding box with at most
+     * MAX_RADIUS_CELLS cells, so the cells read stay close to the circle's size.
+     * @param latitude Latitude of the center
+     * @param longitude Longitude of the center
+     * @param radiusKm Radius in kilometers
+     * @return List of {start, end} pairs for orderBy("geohash").startAt(start).endAt(end)
+     */
+    public static List<String[]> queryBounds(double latitude, double longitude, double radiusKm) {
+        double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double lonDelta = Math.min(radiusKm / (KM_PER_DEGREE_LON * cosLat), 180);
+
+        double minLat = Math.max(latitude - latDelta, -90);
+        double maxLat = Math.min(latitude + latDelta, 90);
+        double minLon = wrapLongitude(longitude - lonDelta);
+        double maxLon = wrapLongitude(longitude + lonDelta);
+
+        List<String> cells = tilesForBounds(minLat, minLon, maxLat, maxLon, MAX_RADIUS_CELLS);
+        List<String[]> bounds = new ArrayList<>(cells.size());
+        for (String hash : cells) {
+            bounds.add(new String[]{hash, hash + "~"});
+        }
+        return bounds;
+    }
+
+    /**
+     * Builds the geohash tiles that cover a bounding box.
+     * The precision is picked so no more than maxTiles tiles are needed.
+     * @param south Southern latitude of the box
+     * @param west Western longitude of the box
+     * @param north Northern latitude of the box
+     * @param east Eastern longitude of the box
+     * @param maxTiles Maximum number of tiles to return
+     * @return Geohash tiles covering the box
+     */
+    public static List<String> tilesForBounds(double south, double west, double north, double east, int maxTiles) {
+        south = Math.max(south, -90);
+        north = Math.min(north, 90);
+        if (east < west) {
+            // The box crosses the antimeridian
+            east += 360;
+        }
+        double latSpan = north - south;
+        double lonSpan = Math.min(east - west, 360);
+
+        int precision = 1;
+        for (int candidate = DEFAULT_PRECISION; candidate > 1; candidate--) {
+            int rows = (int) Math.ceil(latSpan / cellHeight(candidate)) + 1;
+            int columns = (int) Math.ceil(lonSpan / cellWidth(candidate)) + 1;
+            if (rows * columns <= maxTiles) {
+                precision = candidate;
+                break;
+            }
+        }
+
+        double cellHeight = cellHeight(precision);
+        double cellWidth = cellWidth(precision);
+
+        Set<String> tiles = new LinkedHashSet<>();
+        for (double lat = south; ; lat = Math.min(lat + cellHeight, north)) {
+            for (double lon = west; ; lon = Math.min(lon + cellWidth, west + lonSpan)) {
+                tiles.add(encode(lat, wrapLongitude(lon), precision));
+                if (lon >= west + lonSpan) break;
+            }
+            if (lat >= north) break;
+        }
+        return new ArrayList<>(tiles);
+    }
+
+    private static double cellHeight(int precision) {
+        int bits = precision * 5;
+        return 180.0 / (1L << (bits / 2));
+    }
+
+    private static double cellWidth(int precision) {
+        int bits = precision * 5;
+        return 360.0 / (1L << (bits - bits / 2));
+    }
+
+    private static double wrapLongitude(double longitude) {
+        if (longitude < -180) {
+            return longitude + 360;
+        } else if (longitude >= 180) {
+            return longitude - 360;
+        }
+        return longitude;
+    }
+}
@@ -10,15 +10,11 @@ import android.location.LocationManager;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import com.app.chatori.model.Stall;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.Task;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Locale;
 
 /**
  * Utility class for location-related operations.
@@ -87,57 +83,14 @@ public class LocationUtils {
     }
     
     /**
-     * Sorts stalls by distance from current location
-     * @param stalls List of stalls to sort
-     * @param currentLocation Current location
-     * @return Sorted list of stalls
+     * Formats a distance for display
+     * @param distanceKm Distance in kilometers
+     * @return Distance in meters below 1 km, otherwise in kilometers
      */
-    public static List<Stall> sortStallsByDistance(List<Stall> stalls, Location currentLocation) {
-        if (currentLocation == null || stalls == null || stalls.isEmpty()) {
-            return stalls;
+    public static String formatDistance(double distanceKm) {
+        if (distanceKm < 1) {
+            return (int) (distanceKm * 1000) + " m";
         }
-        
-        List<Stall> sortedStalls = new ArrayList<>(stalls);
-        
-        Collections.sort(sortedStalls, (stall1, stall2) -> {
-            double distance1 = calculateDistance(
-                    currentLocation.getLatitude(), currentLocation.getLongitude(),
-                    stall1.getLocation().getLatitude(), stall1.getLocation().getLongitude());
-            
-            double distance2 = calculateDistance(
-                    currentLocation.getLatitude(), currentLocation.getLongitude(),
-                    stall2.getLocation().getLatitude(), stall2.getLocation().getLongitude());
-            
-            return Double.compare(distance1, distance2);
-        });
-        
-        return sortedStalls;
-    }
-    
-    /**
-     * Filters stalls within a certain radius
-     * @param stalls List of stalls to filter
-     * @param currentLocation Current location
-     * @param radiusKm Radius in kilometers
-     * @return Filtered list of stalls
-     */
-    public static List<Stall> filterStallsByRadius(List<Stall> stalls, Location currentLocation, double radiusKm) {
-        if (currentLocation == null || stalls == null || stalls.isEmpty()) {
-            return stalls;
-        }
-        
-        List<Stall> filteredStalls = new ArrayList<>();
-        
-        for (Stall stall : stalls) {
-            double distance = calculateDistance(
-                    currentLocation.getLatitude(), currentLocation.getLongitude(),
-                    stall.getLocation().getLatitude(), stall.getLocation().getLongitude());
-            
-            if (distance <= radiusKm) {
-                filteredStalls.add(stall);
-            }
-        }
-        
-        return filteredStalls;
+        return String.format(Locale.getDefault(), "%.1f km", distanceKm);
     }
 }
@@ -0,0 +1,108 @@
+package com.app.chatori.model;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.GeoPoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the stall codec.
+ */
+public class StallCodecTest {
+    private static final String[] DISHES = {
+            "Golgappe", "Momos", "Aloo Tikki", "Kathi Roll", "Chole Bhature", "Pav Bhaji", "Samosa", "Jalebi"
+    };
+    private static final String[] AREAS = {
+            "Chandni Chowk", "Lajpat Nagar", "Karol Bagh", "Sarojini Nagar", "Hauz Khas", "Janakpuri"
+    };
+
+    @Test
+    public void decode_readsEveryField() {
+        Map<String, Object> data = stallData(7, new Random(1));
+        Stall stall = StallCodec.decode("doc7", data, null);
+
+        assertEquals("s7", stall.getStallId());
+        assertEquals(data.get("name"), stall.getName());
+        assertEquals(data.get("dishType"), stall.getDishType());
+        assertEquals(data.get("area"), stall.getArea());
+        assertEquals(data.get("location"), stall.getLocation());
+        assertEquals(data.get("images"), stall.getImages());
+        assertEquals(((Double) data.get("rating")).floatValue(), stall.getRating(), 0.0001f);
+        assertEquals(((Long) data.get("numRatings")).intValue(), stall.getNumRatings());
+        assertEquals(((Timestamp) data.get("updatedAt")).toDate(), stall.getUpdatedAt());
+    }
+
+    @Test
+    public void decode_wholeNumbersAndMissingId() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("rating", 4L);
+        data.put("ratingSum", 12L);
+        Stall stall = StallCodec.decode("doc1", data, null);
+
+        assertEquals("doc1", stall.getStallId());
+        assertEquals(4f, stall.getRating(), 0f);
+        assertEquals(12.0, stall.getRatingSum(), 0.0);
+        assertNull(stall.getName());
+    }
+
+    @Test
+    public void decode_partialSkipsOtherFields() {
+        Map<String, Object> data = stallData(3, new Random(2));
+        Stall stall = StallCodec.decode("doc3", data, StallCodec.LIST_FIELDS);
+
+        assertEquals(data.get("name"), stall.getName());
+        assertNull(stall.getDescription());
+        assertNull(stall.getPhone());
+        assertNull(stall.getCreatedAt());
+    }
+
+    @Test
+    public void encodeDetails_leavesOutRatingFields() {
+        Stall stall = StallCodec.decode("doc5", stallData(5, new Random(3)), null);
+        Map<String, Object> details = StallCodec.encodeDetails(stall);
+
+        assertEquals(stall.getName(), details.get("name"));
+        assertEquals(stall.getLocation(), details.get("location"));
+        assertFalse(details.containsKey("rating"));
+        assertFalse(details.containsKey("numRatings"));
+        assertFalse(details.containsKey("ratingSum"));
+        assertFalse(details.containsKey("updatedAt"));
+    }
+
+    /**
+     * Builds stall data the way Firestore returns it: whole numbers as Long,
+     * decimals as Double and dates as Timestamp.
+     */
+    private static Map<String, Object> stallData(int i, Random random) {
+        String dish = DISHES[random.nextInt(DISHES.length)];
+        Map<String, Object> data = new HashMap<>();
+        data.put("stallId", "s" + i);
+        data.put("name", "Stall " + i + " " + dish);
+        data.put("dishType", dish);
+        data.put("area", AREAS[random.nextInt(AREAS.length)]);
+        data.put("location", new GeoPoint(28.5 + random.nextDouble(), 77 + random.nextDouble()));
+        data.put("geohash", "ttn" + Integer.toString(i, 32));
+        data.put("images", Arrays.asList("https://example.com/" + i + "/1.jpg", "https://example.com/" + i + "/2.jpg"));
+        data.put("createdBy", "u" + random.nextInt(500));
+        double rating = random.nextInt(50) / 10.0;
+        long numRatings = random.nextInt(300);
+        data.put("rating", rating);
+        data.put("numRatings", numRatings);
+        data.put("ratingSum", rating * numRatings);
+        data.put("description", "Famous for " + dish);
+        data.put("openingHours", "10 AM - 10 PM");
+        data.put("phone", "98" + (10_000_000 + i));
+        data.put("userId", "u" + random.nextInt(500));
+        data.put("ownerName", "Owner " + i);
+        data.put("createdAt", new Timestamp(1_700_000_000L + i, 0));
+        data.put("updatedAt", new Timestamp(1_710_000_000L + i, 0));
+        return data;
+    }
+}
@@ -0,0 +1,75 @@
+package com.app.chatori.repository;
+
+import com.app.chatori.model.Stall;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the fuzzy stall search.
+ */
+public class StallFuzzyIndexTest {
+    @Test
+    public void typo_findsStall() {
+        StallFuzzyIndex index = indexOf(
+                new Stall("1", "Sharma Ji", "Golgappe", "Chandni Chowk", null, "u"),
+                new Stall("2", "Raju Momos", "Momos", "Lajpat Nagar", null, "u"));
+
+        assertEquals("1", index.search("golgape").get(0).getStallId());
+        assertEquals("2", index.search("momso").get(0).getStallId());
+    }
+
+    @Test
+    public void spacingAndSynonyms_findSameStall() {
+        StallFuzzyIndex index = indexOf(
+                new Stall("1", "Sharma Ji", "Golgappe", "Chandni Chowk", null, "u"),
+                new Stall("2", "Raju Momos", "Momos", "Lajpat Nagar", null, "u"));
+
+        assertEquals("1", index.search("gol gappe").get(0).getStallId());
+        assertEquals("1", index.search("panipuri").get(0).getStallId());
+        assertEquals("1", index.search("puchka").get(0).getStallId());
+    }
+
+    @Test
+    public void dishTags_areSearchable() {
+        StallFuzzyIndex index = indexOf(new Stall("1", "Bittu Corner", "Chaat", "Karol Bagh", null, "u"));
+        assertTrue(index.search("tamarind").isEmpty());
+
+        index.setTags("1", Arrays.asList("tamarind", "spicy"));
+        assertEquals("1", index.search("tamrind").get(0).getStallId());
+    }
+
+    @Test
+    public void exactMatch_ranksAboveTypo() {
+        StallFuzzyIndex index = indexOf(
+                new Stall("1", "Pappu Samose", "Samosa", "Karol Bagh", null, "u"),
+                new Stall("2", "Kallu Snacks", "Samosa", "Karol Bagh", null, "u"));
+
+        List<Stall> results = index.search("samose");
+        assertEquals(2, results.size());
+        assertEquals("1", results.get(0).getStallId());
+    }
+
+    @Test
+    public void removedStall_isNotFound() {
+        StallFuzzyIndex index = indexOf(new Stall("1", "Sharma Ji", "Golgappe", "Chandni Chowk", null, "u"));
+        index.remove("1");
+        assertTrue(index.search("golgappe").isEmpty());
+    }
+
+    @Test
+    public void editDistance_isBounded() {
+        assertEquals(1, StallFuzzyIndex.editDistance("golgape", "golgappe", 2));
+        assertEquals(3, StallFuzzyIndex.editDistance("momos", "biryani", 2));
+    }
+
+    private static StallFuzzyIndex indexOf(Stall... stalls) {
+        StallFuzzyIndex index = new StallFuzzyIndex();
+        index.rebuild(Arrays.asList(stalls));
+        return index;
+    }
+}
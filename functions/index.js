@@ -0,0 +1,31 @@
+/**
+ * Cloud Functions for the Chatori Firestore database.
+ */
+const { onDocumentWritten } = require('firebase-functions/v2/firestore');
+const admin = require('firebase-admin');
+
+admin.initializeApp();
+
+/**
+ * Keeps each stall's stored "rating" equal to ratingSum / numRatings.
+ * Reviews only increment the sum and count, which never contend, and the
+ * app orders and filters queries by the stored average, so it is derived
+ * here after every write. Triggers can run out of order, but the rating
+ * write triggers this again with the latest totals, so it always settles
+ * on the current average.
+ */
+exports.stallRatingAverage = onDocumentWritten('Stalls/{stallId}', async (event) => {
+  const after = event.data.after;
+  if (!after.exists) return;
+
+  const ratingSum = after.get('ratingSum');
+  const numRatings = after.get('numRatings');
+  if (typeof ratingSum !== 'number' || typeof numRatings !== 'number' || numRatings <= 0) return;
+
+  const rating = ratingSum / numRatings;
+  const stored = after.get('rating');
+  if (typeof stored === 'number' && Math.abs(stored - rating) < 1e-6) return;
+
+  // updatedAt is left alone, clients derive the average from the totals they already synced
+  await after.ref.update({ rating });
+});
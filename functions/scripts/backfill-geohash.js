@@ -0,0 +1,90 @@
+/**
+ * One-off migration that writes a geohash to every stall saved before stalls
+ * had one, so the app's geohash range queries find them.
+ *
+ * Run once per project with admin credentials:
+ *   GOOGLE_APPLICATION_CREDENTIALS=service-account.json npm run backfill-geohash
+ *
+ * Only the geohash field is written. updatedAt is left alone, so syncing
+ * clients do not download the whole catalog again.
+ */
+const admin = require('firebase-admin');
+
+// Must match GeoHashUtils in the app
+const BASE32 = '0123456789bcdefghjkmnpqrstuvwxyz';
+const PRECISION = 9;
+// Maximum number of writes Firestore accepts in one batch
+const BATCH_LIMIT = 500;
+
+function encode(latitude, longitude, precision) {
+  let minLat = -90, maxLat = 90;
+  let minLon = -180, maxLon = 180;
+  let hash = '';
+  let evenBit = true;
+  let bit = 0;
+  let ch = 0;
+
+  while (hash.length < precision) {
+    if (evenBit) {
+      const mid = (minLon + maxLon) / 2;
+      if (longitude >= mid) {
+        ch = (ch << 1) | 1;
+        minLon = mid;
+      } else {
+        ch = ch << 1;
+        maxLon = mid;
+      }
+    } else {
+      const mid = (minLat + maxLat) / 2;
+      if (latitude >= mid) {
+        ch = (ch << 1) | 1;
+        minLat = mid;
+      } else {
+        ch = ch << 1;
+        maxLat = mid;
+      }
+    }
+    evenBit = !evenBit;
+
+    if (++bit === 5) {
+      hash += BASE32.charAt(ch);
+      bit = 0;
+      ch = 0;
+    }
+  }
+  return hash;
+}
+
+async function main() {
+  admin.initializeApp();
+  const db = admin.firestore();
+
+  const stalls = await db.collection('Stalls').get();
+  let batch = db.batch();
+  let batchSize = 0;
+  let updated = 0;
+
+  for (const doc of stalls.docs) {
+    const location = doc.get('location');
+    if (!location) continue;
+    const geohash = encode(location.latitude, location.longitude, PRECISION);
+    if (geohash === doc.get('geohash')) continue;
+
+    batch.update(doc.ref, { geohash });
+    updated++;
+    if (++batchSize === BATCH_LIMIT) {
+      await batch.commit();
+      batch = db.batch();
+      batchSize = 0;
+    }
+  }
+  if (batchSize > 0) {
+    await batch.commit();
+  }
+  console.log(`Wrote a geohash to ${updated} of ${stalls.size} stalls`);
+}
+
+main().catch((error) => {
+  console.error(error);
+  process.exit(1);
+});